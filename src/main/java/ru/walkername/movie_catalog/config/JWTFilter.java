@@ -1,34 +1,67 @@
 package ru.walkername.movie_catalog.config;
 
+import com.auth0.jwt.exceptions.JWTDecodeException;
 import com.auth0.jwt.exceptions.JWTVerificationException;
-import com.auth0.jwt.interfaces.DecodedJWT;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.auth0.jwt.exceptions.SignatureVerificationException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
+import ru.walkername.movie_catalog.models.VerifiedToken;
 import ru.walkername.movie_catalog.services.TokenService;
 
 import java.io.IOException;
-import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
-import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 @Component
 public class JWTFilter extends OncePerRequestFilter {
 
+    public enum RejectionReason {
+        MISSING("JWT token was not found"),
+        MALFORMED("Invalid JWT token"),
+        EXPIRED("Invalid JWT token"),
+        BAD_SIGNATURE("Invalid JWT token"),
+        INVALID_CLAIMS("Invalid JWT token");
+
+        // Part of the response body between timestamp and path
+        private final byte[] body;
+
+        RejectionReason(String message) {
+            this.body = ("\",\"status\":\"401\",\"error\":\"" + message + "\",\"path\":\"")
+                    .getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final byte[] BODY_START = "{\"timestamp\":\"".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] BODY_END = "\"}".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
     private final TokenService tokenService;
 
+    private final Map<RejectionReason, LongAdder> rejections = new EnumMap<>(RejectionReason.class);
+
+    // Formatted timestamp is reused by all rejections within the same millisecond
+    private volatile Timestamp lastTimestamp = new Timestamp(0);
+
     @Autowired
     public JWTFilter(TokenService tokenService) {
         this.tokenService = tokenService;
+        for (RejectionReason reason : RejectionReason.values()) {
+            rejections.put(reason, new LongAdder());
+        }
     }
 
     @Override
@@ -43,25 +76,23 @@ public class JWTFilter extends OncePerRequestFilter {
             String token = authHeader.substring(7);
 
             if (token.isBlank()) {
-                setResponse(response, request, "JWT token was not found");
+                setResponse(response, request, RejectionReason.MISSING);
                 return;
             } else {
                 try {
-                    DecodedJWT jwt = tokenService.validateToken(token);
-                    String role = jwt.getClaim("role").asString();
-                    String username = jwt.getClaim("username").asString();
+                    VerifiedToken verifiedToken = tokenService.authenticate(token);
 
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            username,
+                            verifiedToken.getUsername(),
                             "",
-                            Collections.singletonList(new SimpleGrantedAuthority(role))
+                            verifiedToken.getAuthorities()
                     );
 
                     if (SecurityContextHolder.getContext().getAuthentication() == null) {
                         SecurityContextHolder.getContext().setAuthentication(authToken);
                     }
                 } catch (JWTVerificationException e) {
-                    setResponse(response, request, "Invalid JWT token");
+                    setResponse(response, request, reasonOf(e));
                     return;
                 }
 
@@ -71,23 +102,84 @@ public class JWTFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
-    private void setResponse(HttpServletResponse response, HttpServletRequest request, String message) throws IOException {
-        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+    /**
+     * @return number of requests rejected for the reason since start
+     */
+    public long getRejections(RejectionReason reason) {
+        return rejections.get(reason).sum();
+    }
+
+    private static RejectionReason reasonOf(JWTVerificationException e) {
+        if (e instanceof TokenExpiredException) {
+            return RejectionReason.EXPIRED;
+        }
+        if (e instanceof SignatureVerificationException) {
+            return RejectionReason.BAD_SIGNATURE;
+        }
+        if (e instanceof JWTDecodeException) {
+            return RejectionReason.MALFORMED;
+        }
+        return RejectionReason.INVALID_CLAIMS;
+    }
+
+    /**
+     * Writes 401 response from pre-encoded parts straight to the output stream,
+     * rejections are frequent during token storms and should not allocate per request
+     */
+    private void setResponse(HttpServletResponse response, HttpServletRequest request, RejectionReason reason) throws IOException {
+        rejections.get(reason).increment();
 
         response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
         response.setContentType("application/json");
         response.setCharacterEncoding("UTF-8");
 
-        LinkedHashMap<String, String> responseMap = new LinkedHashMap<>();
-        responseMap.put("timestamp", now.toString());
-        responseMap.put("status", String.valueOf(response.getStatus()));
-        responseMap.put("error", message);
-        responseMap.put("path", request.getRequestURI());
+        ServletOutputStream out = response.getOutputStream();
+        out.write(BODY_START);
+        out.write(timestamp());
+        out.write(reason.body);
+        writeEscaped(out, request.getRequestURI());
+        out.write(BODY_END);
+    }
 
-        ObjectMapper objectMapper = new ObjectMapper();
-        String jsonResponse = objectMapper.writeValueAsString(responseMap);
+    private byte[] timestamp() {
+        long now = System.currentTimeMillis();
+        Timestamp timestamp = lastTimestamp;
+        if (timestamp.millis != now) {
+            timestamp = new Timestamp(now);
+            lastTimestamp = timestamp;
+        }
+        return timestamp.formatted;
+    }
 
-        response.getWriter().write(jsonResponse);
+    /**
+     * Writes value as content of a JSON string, escaping everything except printable ASCII
+     */
+    private static void writeEscaped(ServletOutputStream out, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c < 0x7f && c != '"' && c != '\\') {
+                out.write(c);
+            } else {
+                out.write('\\');
+                out.write('u');
+                out.write(HEX[(c >> 12) & 0xf]);
+                out.write(HEX[(c >> 8) & 0xf]);
+                out.write(HEX[(c >> 4) & 0xf]);
+                out.write(HEX[c & 0xf]);
+            }
+        }
+    }
+
+    private static class Timestamp {
+
+        private final long millis;
+
+        private final byte[] formatted;
+
+        private Timestamp(long millis) {
+            this.millis = millis;
+            this.formatted = Instant.ofEpochMilli(millis).toString().getBytes(StandardCharsets.US_ASCII);
+        }
     }
 
 }
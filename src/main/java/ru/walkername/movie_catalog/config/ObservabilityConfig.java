@@ -0,0 +1,112 @@
+package ru.walkername.movie_catalog.config;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+import ru.walkername.movie_catalog.services.MovieCache;
+import ru.walkername.movie_catalog.services.RatingPageCache;
+import ru.walkername.movie_catalog.services.RatingServiceClient;
+import ru.walkername.movie_catalog.services.RatingUpdateQueue;
+import ru.walkername.movie_catalog.services.TokenService;
+import ru.walkername.movie_catalog.util.CallStats;
+import ru.walkername.movie_catalog.util.CircuitBreaker;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Meters of the service's own components. Endpoints, rating service calls, repository calls,
+ * connection pool and JVM are measured by Spring Boot, defaults are in observability.properties.
+ */
+@Configuration
+@PropertySource("classpath:observability.properties")
+public class ObservabilityConfig {
+
+    @Bean
+    public MeterBinder movieCacheMetrics(MovieCache movieCache) {
+        return registry -> bindCache(registry, "movies", movieCache::stats, movieCache::size);
+    }
+
+    @Bean
+    public MeterBinder tokenCacheMetrics(TokenService tokenService) {
+        return registry -> bindCache(registry, "verified-tokens", tokenService::getCacheStats, tokenService::getCacheSize);
+    }
+
+    @Bean
+    public MeterBinder ratingPageCacheMetrics(RatingPageCache ratingPageCache) {
+        return registry -> bindCache(registry, "rating-pages", ratingPageCache::stats, ratingPageCache::size);
+    }
+
+    @Bean
+    public MeterBinder ratingServiceMetrics(RatingServiceClient ratingServiceClient) {
+        return registry -> {
+            CallStats stats = ratingServiceClient.getCallStats();
+            FunctionCounter.builder("rating.service.calls", stats, s -> s.getCalls() - s.getFailures())
+                    .tag("outcome", "success")
+                    .register(registry);
+            FunctionCounter.builder("rating.service.calls", stats, CallStats::getFailures)
+                    .tag("outcome", "failure")
+                    .register(registry);
+            FunctionCounter.builder("rating.service.calls", stats, CallStats::getRejected)
+                    .tag("outcome", "rejected")
+                    .description("Calls that were not made because the circuit breaker is open")
+                    .register(registry);
+            for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+                Gauge.builder("rating.service.circuit.state", ratingServiceClient,
+                                client -> client.getCircuitBreakerState() == state ? 1 : 0)
+                        .tag("state", state.name().toLowerCase(Locale.ROOT))
+                        .register(registry);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder ratingQueueMetrics(RatingUpdateQueue ratingUpdateQueue) {
+        return registry -> {
+            Gauge.builder("ratings.queue.size", ratingUpdateQueue, RatingUpdateQueue::size)
+                    .register(registry);
+            FunctionCounter.builder("ratings.events", ratingUpdateQueue, RatingUpdateQueue::getEnqueuedEvents)
+                    .tag("stage", "enqueued")
+                    .register(registry);
+            FunctionCounter.builder("ratings.events", ratingUpdateQueue, RatingUpdateQueue::getAppliedEvents)
+                    .tag("stage", "applied")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder jwtRejectionMetrics(JWTFilter jwtFilter) {
+        return registry -> {
+            for (JWTFilter.RejectionReason reason : JWTFilter.RejectionReason.values()) {
+                FunctionCounter.builder("auth.jwt.rejections", jwtFilter, filter -> filter.getRejections(reason))
+                        .tag("reason", reason.name().toLowerCase(Locale.ROOT))
+                        .register(registry);
+            }
+        };
+    }
+
+    /**
+     * Same meter names as Micrometer's CaffeineCacheMetrics, so dashboards of Spring caches fit
+     */
+    private static void bindCache(MeterRegistry registry, String name, Supplier<CacheStats> stats, Supplier<Long> size) {
+        FunctionCounter.builder("cache.gets", stats, s -> s.get().hitCount())
+                .tag("cache", name)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", stats, s -> s.get().missCount())
+                .tag("cache", name)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("cache.evictions", stats, s -> s.get().evictionCount())
+                .tag("cache", name)
+                .register(registry);
+        Gauge.builder("cache.size", size, s -> s.get())
+                .tag("cache", name)
+                .register(registry);
+    }
+}
@@ -0,0 +1,80 @@
+package ru.walkername.movie_catalog.config;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultHttpRequestRetryStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+
+@Configuration
+public class RatingServiceClientConfig {
+
+    /**
+     * RestTemplate of the rating service: keep-alive connection pool,
+     * deadlines for connecting, waiting for a pooled connection and reading the response,
+     * one retry of idempotent requests on I/O errors (timeouts are not retried).
+     * Built by RestTemplateBuilder, so calls are timed and carry the trace context.
+     */
+    @Bean
+    public RestTemplate ratingServiceRestTemplate(
+            RestTemplateBuilder restTemplateBuilder,
+            @Value("${rating.service.max-connections:50}") int maxConnections,
+            @Value("${rating.service.connect-timeout:PT1S}") Duration connectTimeout,
+            @Value("${rating.service.read-timeout:PT2S}") Duration readTimeout,
+            @Value("${rating.service.pool-timeout:PT0.5S}") Duration poolTimeout
+    ) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .setTimeToLive(TimeValue.ofMinutes(5))
+                        .build())
+                .build();
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(poolTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                .setRetryStrategy(new IoErrorRetryStrategy())
+                .evictIdleConnections(TimeValue.ofSeconds(30))
+                .build();
+
+        return restTemplateBuilder
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(httpClient))
+                .build();
+    }
+
+    /**
+     * One retry after 100 ms on I/O errors only. The default strategy also retries 429 and 503
+     * after the server's Retry-After, which may be far beyond the deadline of the call
+     */
+    private static class IoErrorRetryStrategy extends DefaultHttpRequestRetryStrategy {
+
+        private IoErrorRetryStrategy() {
+            super(1, TimeValue.ofMilliseconds(100));
+        }
+
+        @Override
+        public boolean retryRequest(HttpResponse response, int execCount, HttpContext context) {
+            return false;
+        }
+    }
+}
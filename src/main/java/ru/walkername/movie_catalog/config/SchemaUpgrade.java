@@ -0,0 +1,88 @@
+package ru.walkername.movie_catalog.config;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Data changes that Hibernate schema update can't make by itself.
+ * Runs once per start, after Hibernate has updated the schema and before requests are served;
+ * every step is idempotent, so running it on an already upgraded DB changes nothing.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class SchemaUpgrade {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaUpgrade.class);
+
+    // rating_sum was added with default 0, sums of movies rated before are restored from their averages
+    private static final String BACKFILL_RATING_SUM_SQL = "UPDATE movie SET rating_sum = average_rating * scores " +
+            "WHERE rating_sum = 0 AND scores > 0";
+
+    // Imports match movies by ON CONFLICT (title, release_year), which needs this constraint.
+    // Hibernate can't add it to a table that already has duplicates and only logs the failure
+    private static final String TITLE_RELEASE_YEAR_KEY = "movie_title_release_year_key";
+
+    private static final String HAS_TITLE_RELEASE_YEAR_KEY_SQL = "SELECT EXISTS (SELECT 1 FROM pg_constraint " +
+            "WHERE conrelid = 'movie'::regclass AND conname = '" + TITLE_RELEASE_YEAR_KEY + "')";
+
+    private static final String COUNT_DUPLICATES_SQL = "SELECT count(*) FROM (SELECT 1 FROM movie " +
+            "GROUP BY title, release_year HAVING count(*) > 1) duplicates";
+
+    private static final String ADD_TITLE_RELEASE_YEAR_KEY_SQL = "ALTER TABLE movie ADD CONSTRAINT " +
+            TITLE_RELEASE_YEAR_KEY + " UNIQUE (title, release_year)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile boolean titleReleaseYearKey;
+
+    @Autowired
+    public SchemaUpgrade(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void upgrade() {
+        int restored = jdbcTemplate.update(BACKFILL_RATING_SUM_SQL);
+        if (restored > 0) {
+            log.info("Restored rating sums of {} movies", restored);
+        }
+        ensureTitleReleaseYearKey();
+    }
+
+    /**
+     * Adds the unique constraint on (title, release_year) if it is missing and the table allows it.
+     * Duplicates are not removed automatically: ratings of the rating service refer to movies by id,
+     * so which of them to keep is up to the operator. Until then imports are refused.
+     * @return true if the constraint exists
+     */
+    public synchronized boolean ensureTitleReleaseYearKey() {
+        if (titleReleaseYearKey) {
+            return true;
+        }
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(HAS_TITLE_RELEASE_YEAR_KEY_SQL, Boolean.class))) {
+            Long duplicates = jdbcTemplate.queryForObject(COUNT_DUPLICATES_SQL, Long.class);
+            if (duplicates != null && duplicates > 0) {
+                log.error("Constraint {} is missing: {} pairs of title and release year are used by several movies, " +
+                        "imports are refused until they are merged", TITLE_RELEASE_YEAR_KEY, duplicates);
+                return false;
+            }
+            try {
+                jdbcTemplate.execute(ADD_TITLE_RELEASE_YEAR_KEY_SQL);
+                log.info("Added constraint {}", TITLE_RELEASE_YEAR_KEY);
+            } catch (DataAccessException e) {
+                // Another instance may have added it in the meantime
+                if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(HAS_TITLE_RELEASE_YEAR_KEY_SQL, Boolean.class))) {
+                    throw e;
+                }
+            }
+        }
+        titleReleaseYearKey = true;
+        return true;
+    }
+}
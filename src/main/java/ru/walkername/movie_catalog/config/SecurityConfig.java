@@ -30,9 +30,15 @@ public class SecurityConfig {
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
                 .authorizeHttpRequests(auth -> auth
-                        .requestMatchers("/movies/delete/{id}", "/movies/add", "/movies/edit/{id}").hasAuthority("ADMIN")
                         .requestMatchers(
-                                "/movies", "/movies/{id}", "/movies/user/{id}", "/movies/update-avg-rating/{id}"
+                                "/movies/delete/{id}", "/movies/add", "/movies/edit/{id}", "/movies/cache-stats",
+                                "/movies/import", "/movies/export", "/actuator/prometheus"
+                        ).hasAuthority("ADMIN")
+                        // "/movies/{id}" matches any single segment, so /movies/count and /movies/search are public too
+                        .requestMatchers(
+                                "/movies", "/movies/{id}", "/movies/{id}/stats", "/movies/user/{id}",
+                                "/movies/update-avg-rating/{id}", "/movies/update-avg-rating",
+                                "/actuator/health/**"
                         ).permitAll()
                         .anyRequest().hasAnyAuthority("USER", "ADMIN")
                 )
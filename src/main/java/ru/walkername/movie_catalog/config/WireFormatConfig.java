@@ -0,0 +1,72 @@
+package ru.walkername.movie_catalog.config;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import ru.walkername.movie_catalog.dto.MovieSummary;
+import ru.walkername.movie_catalog.models.Movie;
+
+/**
+ * Formats of responses: JSON for browsers, CBOR (application/cbor) and Smile (application/x-jackson-smile)
+ * for internal consumers that ask for them in Accept. All of them share the mapper settings of Spring Boot.
+ * Compression defaults are in wire-format.properties.
+ */
+@Configuration
+@PropertySource("classpath:wire-format.properties")
+public class WireFormatConfig {
+
+    /**
+     * Id of the property filter of movies and summaries, controllers pass it in MappingJacksonValue
+     * to write only the fields a client asked for
+     */
+    public static final String MOVIE_FIELDS_FILTER = "movieFields";
+
+    /**
+     * Replaces reflective property access of Jackson with generated lambdas,
+     * Spring Boot registers it in every mapper it builds
+     */
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+
+    /**
+     * Puts movies and summaries behind MOVIE_FIELDS_FILTER through a mixin, so the classes themselves
+     * stay free of Jackson annotations. Without a filter in the request every property is written.
+     */
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer movieFieldsFilterCustomizer() {
+        return builder -> builder
+                .mixIn(Movie.class, MovieFieldsMixin.class)
+                .mixIn(MovieSummary.class, MovieFieldsMixin.class)
+                .filters(new SimpleFilterProvider()
+                        .setDefaultFilter(SimpleBeanPropertyFilter.serializeAll())
+                        .setFailOnUnknownId(false));
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+
+    @JsonFilter(MOVIE_FIELDS_FILTER)
+    private interface MovieFieldsMixin {
+
+    }
+}
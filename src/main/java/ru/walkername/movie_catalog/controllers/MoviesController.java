@@ -1,35 +1,99 @@
 package ru.walkername.movie_catalog.controllers;
 
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import ru.walkername.movie_catalog.config.WireFormatConfig;
+import ru.walkername.movie_catalog.dto.CacheStatsResponse;
 import ru.walkername.movie_catalog.dto.MovieDTO;
 import ru.walkername.movie_catalog.dto.MovieDetails;
+import ru.walkername.movie_catalog.dto.MovieImportResponse;
+import ru.walkername.movie_catalog.dto.MovieStats;
+import ru.walkername.movie_catalog.dto.MovieSummary;
+import ru.walkername.movie_catalog.dto.MoviesPageResponse;
 import ru.walkername.movie_catalog.dto.NewRatingDTO;
+import ru.walkername.movie_catalog.dto.RatingEventsDTO;
 import ru.walkername.movie_catalog.models.Movie;
+import ru.walkername.movie_catalog.services.CatalogRating;
+import ru.walkername.movie_catalog.services.CatalogVersion;
+import ru.walkername.movie_catalog.services.MovieExportService;
+import ru.walkername.movie_catalog.services.MovieImportService;
 import ru.walkername.movie_catalog.services.MoviesService;
+import ru.walkername.movie_catalog.services.RatingUpdateQueue;
 import ru.walkername.movie_catalog.util.MovieErrorResponse;
+import ru.walkername.movie_catalog.util.MovieFileFormat;
+import ru.walkername.movie_catalog.util.MovieImportUnavailableException;
+import ru.walkername.movie_catalog.util.MovieMapper;
+import ru.walkername.movie_catalog.util.MovieSort;
 import ru.walkername.movie_catalog.util.MovieWrongValidationException;
+import ru.walkername.movie_catalog.util.RatingQueueFullException;
+import ru.walkername.movie_catalog.util.RatingServiceUnavailableException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/movies")
 @CrossOrigin
 public class MoviesController {
 
+    private static final int MAX_SEARCH_LIMIT = 50;
+
+    private static final int MAX_CURSOR_LIMIT = 100;
+
+    private static final Set<String> MOVIE_FIELDS = Set.of(
+            "id", "title", "releaseYear", "averageRating", "scores", "description"
+    );
+
     private final MoviesService moviesService;
-    private final ModelMapper modelMapper;
+    private final RatingUpdateQueue ratingUpdateQueue;
+    private final MovieImportService movieImportService;
+    private final MovieExportService movieExportService;
+    private final CatalogVersion catalogVersion;
+    private final CatalogRating catalogRating;
+
+    // Anonymous reads may be served by shared caches (CDN) for a while, then revalidated by ETag
+    private final CacheControl publicCacheControl;
+
+    // Reads that require a token (see SecurityConfig) are cached by the client only and always revalidated
+    private final CacheControl privateCacheControl = CacheControl.noCache().cachePrivate();
 
     @Autowired
-    public MoviesController(MoviesService moviesService, ModelMapper modelMapper) {
+    public MoviesController(
+            MoviesService moviesService,
+            RatingUpdateQueue ratingUpdateQueue,
+            MovieImportService movieImportService,
+            MovieExportService movieExportService,
+            CatalogVersion catalogVersion,
+            CatalogRating catalogRating,
+            @Value("${movies.http.shared-max-age:PT5S}") Duration sharedMaxAge
+    ) {
         this.moviesService = moviesService;
-        this.modelMapper = modelMapper;
+        this.ratingUpdateQueue = ratingUpdateQueue;
+        this.movieImportService = movieImportService;
+        this.movieExportService = movieExportService;
+        this.catalogVersion = catalogVersion;
+        this.catalogRating = catalogRating;
+        this.publicCacheControl = CacheControl.maxAge(Duration.ZERO).sMaxAge(sharedMaxAge).cachePublic();
     }
 
     @PostMapping("/add")
@@ -43,20 +107,85 @@ public class MoviesController {
         return ResponseEntity.ok(HttpStatus.OK);
     }
 
+    /**
+     * Lists return summaries without description, fields=title,averageRating writes only the listed fields;
+     * whole movies are loaded only if description is among them.
+     * sort=rank orders by the weighted rank score instead of the plain average rating
+     */
     @GetMapping()
-    public List<Movie> index(
+    public MappingJacksonValue index(
             @RequestParam(value = "page") Integer page,
             @RequestParam(value = "limit", required = false, defaultValue = "10") Integer limit,
-            @RequestParam(value = "down", required = false, defaultValue = "true") boolean down
+            @RequestParam(value = "down", required = false, defaultValue = "true") boolean down,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestParam(value = "sort", required = false, defaultValue = "rating") String sort,
+            ServletWebRequest request
     ) {
-        return moviesService.getAllMoviesWithPagination(page, limit, down);
+        Set<String> selectedFields = selectedFields(fields);
+        MovieSort movieSort = MovieSort.of(sort);
+        if (notModified(request, catalogVersion.etag(), publicCacheControl)) {
+            return null;
+        }
+        if (withDescription(selectedFields)) {
+            return withFields(moviesService.getAllMoviesWithPagination(page, limit, down, movieSort), selectedFields);
+        }
+        return withFields(moviesService.getMovieSummariesWithPagination(page, limit, down, movieSort), selectedFields);
     }
 
+    /**
+     * Keyset variant of the listing: pass empty cursor for the first page,
+     * then nextCursor of the previous response; limit is capped at MAX_CURSOR_LIMIT
+     */
+    @GetMapping(params = "cursor")
+    public MoviesPageResponse<MovieSummary> indexByCursor(
+            @RequestParam(value = "cursor") String cursor,
+            @RequestParam(value = "limit", required = false, defaultValue = "10") Integer limit,
+            @RequestParam(value = "down", required = false, defaultValue = "true") boolean down,
+            ServletWebRequest request
+    ) {
+        if (limit < 1) {
+            throw new MovieWrongValidationException("limit - should be greater than 0;");
+        }
+        if (notModified(request, catalogVersion.etag(), publicCacheControl)) {
+            return null;
+        }
+        return moviesService.getMoviesAfterCursor(cursor, Math.min(limit, MAX_CURSOR_LIMIT), down);
+    }
+
+    /**
+     * ETag is the version of the movie, so it is the same on every instance
+     */
     @GetMapping("/{id}")
     public Movie getMovie(
-            @PathVariable("id") int id
+            @PathVariable("id") int id,
+            ServletWebRequest request
     ) {
-        return moviesService.findOne(id);
+        Movie movie = moviesService.findOne(id);
+        if (movie != null && notModified(request, "\"m" + id + "-" + movie.getVersion() + "\"", publicCacheControl)) {
+            return null;
+        }
+        return movie;
+    }
+
+    /**
+     * Rating statistics of the movie, derived from the cached movie without asking rating service.
+     * Bayesian score also depends on the catalog mean, so it is a part of the ETag
+     */
+    @GetMapping("/{id}/stats")
+    public MovieStats getMovieStats(
+            @PathVariable("id") int id,
+            ServletWebRequest request
+    ) {
+        Movie movie = moviesService.findOne(id);
+        if (movie == null) {
+            return null;
+        }
+        String etag = "\"s" + id + "-" + movie.getVersion() + "-"
+                + Integer.toHexString(Double.hashCode(catalogRating.getMean())) + "\"";
+        if (notModified(request, etag, publicCacheControl)) {
+            return null;
+        }
+        return catalogRating.statsOf(movie);
     }
 
     @GetMapping("/user/{id}")
@@ -76,11 +205,7 @@ public class MoviesController {
             BindingResult bindingResult
     ) {
         validateMovie(bindingResult);
-        Movie movie = moviesService.findOne(id);
-        if (movie != null) {
-            modelMapper.map(movieDTO, movie);
-            moviesService.save(movie);
-        }
+        moviesService.edit(id, movieDTO);
         return ResponseEntity.ok(HttpStatus.OK);
     }
 
@@ -95,6 +220,19 @@ public class MoviesController {
         return ResponseEntity.ok(HttpStatus.OK);
     }
 
+    /**
+     * Bulk variant of updateAvgRating: events are queued, merged by movie and applied in the background
+     */
+    @PatchMapping("/update-avg-rating")
+    public ResponseEntity<HttpStatus> updateAvgRatings(
+            @RequestBody @Valid RatingEventsDTO ratingEventsDTO,
+            BindingResult bindingResult
+    ) {
+        validateMovie(bindingResult);
+        ratingUpdateQueue.enqueue(ratingEventsDTO.getEvents());
+        return ResponseEntity.accepted().body(HttpStatus.ACCEPTED);
+    }
+
     @DeleteMapping("/delete/{id}")
     public ResponseEntity<HttpStatus> delete(
             @PathVariable("id") int id
@@ -103,16 +241,105 @@ public class MoviesController {
         return ResponseEntity.ok(HttpStatus.OK);
     }
 
+    /**
+     * Bulk variant of add: body is NDJSON or CSV and is imported while it is being received
+     */
+    @PostMapping("/import")
+    public MovieImportResponse importMovies(
+            @RequestParam(value = "format", required = false, defaultValue = "ndjson") String format,
+            @RequestParam(value = "mode", required = false, defaultValue = "insert") String mode,
+            InputStream body
+    ) throws IOException {
+        return movieImportService.importMovies(
+                body,
+                MovieFileFormat.of(format),
+                MovieImportService.Mode.of(mode)
+        );
+    }
+
+    /**
+     * Whole catalog as NDJSON or CSV, written while it is being read from DB
+     */
+    @GetMapping("/export")
+    public void exportMovies(
+            @RequestParam(value = "format", required = false, defaultValue = "ndjson") String format,
+            HttpServletResponse response
+    ) throws IOException {
+        MovieFileFormat fileFormat = MovieFileFormat.of(format);
+        response.setContentType(fileFormat.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(
+                HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"movies." + fileFormat.name().toLowerCase(Locale.ROOT) + "\""
+        );
+        movieExportService.exportMovies(response.getOutputStream(), fileFormat);
+    }
+
+    /**
+     * @param estimate 'true' -> planner's estimate, cheaper on a huge catalog, but approximate
+     */
     @GetMapping("/count")
-    public long getMoviesNumber() {
-        return moviesService.getMoviesNumber();
+    public Long getMoviesNumber(
+            @RequestParam(value = "estimate", required = false, defaultValue = "false") boolean estimate,
+            ServletWebRequest request
+    ) {
+        if (notModified(request, catalogVersion.etag(), publicCacheControl)) {
+            return null;
+        }
+        return estimate ? moviesService.getMoviesNumberEstimate() : moviesService.getMoviesNumber();
     }
 
     @GetMapping("/search")
-    public List<Movie> search(
-        @RequestParam(value = "query") String query
+    public MappingJacksonValue search(
+        @RequestParam(value = "query") String query,
+        @RequestParam(value = "limit", required = false, defaultValue = "10") Integer limit,
+        @RequestParam(value = "fields", required = false) String fields,
+        ServletWebRequest request
     ) {
-        return moviesService.findByTitleStartingWith(query);
+        if (limit < 1) {
+            throw new MovieWrongValidationException("limit - should be greater than 0;");
+        }
+        Set<String> selectedFields = selectedFields(fields);
+        if (notModified(request, catalogVersion.etag(), publicCacheControl)) {
+            return null;
+        }
+        return withFields(
+                moviesService.findByTitleStartingWith(query, Math.min(limit, MAX_SEARCH_LIMIT), withDescription(selectedFields)),
+                selectedFields
+        );
+    }
+
+    @GetMapping("/search/full")
+    public MappingJacksonValue fullTextSearch(
+            @RequestParam(value = "query") String query,
+            @RequestParam(value = "page", required = false, defaultValue = "0") Integer page,
+            @RequestParam(value = "limit", required = false, defaultValue = "10") Integer limit,
+            @RequestParam(value = "fields", required = false) String fields,
+            ServletWebRequest request
+    ) {
+        if (page < 0 || limit < 1) {
+            throw new MovieWrongValidationException("page, limit - page should not be negative, limit should be greater than 0;");
+        }
+        Set<String> selectedFields = selectedFields(fields);
+        if (notModified(request, catalogVersion.etag(), privateCacheControl)) {
+            return null;
+        }
+        return withFields(
+                moviesService.search(query, page, Math.min(limit, MAX_SEARCH_LIMIT), withDescription(selectedFields)),
+                selectedFields
+        );
+    }
+
+    @GetMapping("/cache-stats")
+    public CacheStatsResponse getCacheStats() {
+        CacheStats stats = moviesService.getCacheStats();
+        return new CacheStatsResponse(
+                moviesService.getCacheSize(),
+                stats.hitCount(),
+                stats.missCount(),
+                stats.hitRate(),
+                stats.evictionCount()
+        );
     }
 
     @ExceptionHandler
@@ -125,6 +352,48 @@ public class MoviesController {
         return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler
+    private ResponseEntity<MovieErrorResponse> handleException(ObjectOptimisticLockingFailureException ex) {
+        MovieErrorResponse response = new MovieErrorResponse(
+                "Movie was changed by another request, reload it and retry",
+                System.currentTimeMillis()
+        );
+
+        return new ResponseEntity<>(response, HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler
+    private ResponseEntity<MovieErrorResponse> handleException(MovieImportUnavailableException ex) {
+        MovieErrorResponse response = new MovieErrorResponse(
+                ex.getMessage(),
+                System.currentTimeMillis()
+        );
+
+        return new ResponseEntity<>(response, HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler
+    private ResponseEntity<MovieErrorResponse> handleException(RatingQueueFullException ex) {
+        MovieErrorResponse response = new MovieErrorResponse(
+                ex.getMessage(),
+                System.currentTimeMillis()
+        );
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(response);
+    }
+
+    @ExceptionHandler
+    private ResponseEntity<MovieErrorResponse> handleException(RatingServiceUnavailableException ex) {
+        MovieErrorResponse response = new MovieErrorResponse(
+                ex.getMessage(),
+                System.currentTimeMillis()
+        );
+
+        return new ResponseEntity<>(response, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     private void validateMovie(BindingResult bindingResult) {
         if (bindingResult.hasErrors()) {
             StringBuilder errorMsg = new StringBuilder();
@@ -140,15 +409,73 @@ public class MoviesController {
         }
     }
 
+    /**
+     * Method to answer a conditional GET: sets ETag and Cache-Control
+     * and checks If-None-Match before anything is loaded or serialized.
+     * The tag is weak: it names the data, not the bytes, which differ between JSON, CBOR and Smile
+     * and between gzipped and plain bodies (Tomcat doesn't compress responses with a strong ETag)
+     * @param etag quoted opaque tag, W/ is prepended here
+     * @return true if the client has the current response, the handler must return null then (304)
+     */
+    private boolean notModified(ServletWebRequest request, String etag, CacheControl cacheControl) {
+        HttpServletResponse response = request.getResponse();
+        if (response != null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+            // Representations differ by Accept, so shared caches must key by it too
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        return request.checkNotModified("W/" + etag);
+    }
+
+    /**
+     * @param fields comma separated names of requested fields, null if not given
+     * @return names of the fields to write, null if all of them
+     */
+    private Set<String> selectedFields(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<String> selected = new HashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (!MOVIE_FIELDS.contains(name)) {
+                throw new MovieWrongValidationException("fields - unknown field '" + name + "';");
+            }
+            selected.add(name);
+        }
+        return selected;
+    }
+
+    /**
+     * @return true if whole movies must be loaded, summaries cover the other fields
+     */
+    private static boolean withDescription(Set<String> selectedFields) {
+        return selectedFields != null && selectedFields.contains("description");
+    }
+
+    /**
+     * Movies and summaries in the body are written with the selected fields only, wrappers are written as is
+     */
+    private static MappingJacksonValue withFields(Object body, Set<String> selectedFields) {
+        MappingJacksonValue value = new MappingJacksonValue(body);
+        if (selectedFields != null) {
+            value.setFilters(new SimpleFilterProvider().addFilter(
+                    WireFormatConfig.MOVIE_FIELDS_FILTER,
+                    SimpleBeanPropertyFilter.filterOutAllExcept(selectedFields)
+            ));
+        }
+        return value;
+    }
+
     private MovieDTO convertToMovieDTO(Movie movie) {
         if (movie == null) {
             return null;
         }
-        return modelMapper.map(movie, MovieDTO.class);
+        return MovieMapper.toMovieDTO(movie);
     }
 
     private Movie convertToMovie(MovieDTO movieDTO) {
-        return modelMapper.map(movieDTO, Movie.class);
+        return MovieMapper.toMovie(movieDTO);
     }
 
 }
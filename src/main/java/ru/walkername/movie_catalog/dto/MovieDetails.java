@@ -1,6 +1,5 @@
 package ru.walkername.movie_catalog.dto;
 
-import ru.walkername.movie_catalog.models.Movie;
 import ru.walkername.movie_catalog.models.Rating;
 
 import java.util.Date;
@@ -27,7 +26,7 @@ public class MovieDetails {
 
     }
 
-    public MovieDetails(Movie movie, Rating rating) {
+    public MovieDetails(MovieSummary movie, Rating rating) {
         this.userId = rating.getUserId();
         this.movieId = movie.getId();
         this.rating = rating.getRating();
@@ -0,0 +1,49 @@
+package ru.walkername.movie_catalog.dto;
+
+import java.util.List;
+
+public class MovieImportResponse {
+
+    private int imported;
+
+    private int rejected;
+
+    private List<String> errors;
+
+    public MovieImportResponse() {
+
+    }
+
+    public MovieImportResponse(int imported, int rejected, List<String> errors) {
+        this.imported = imported;
+        this.rejected = rejected;
+        this.errors = errors;
+    }
+
+    public int getImported() {
+        return imported;
+    }
+
+    public void setImported(int imported) {
+        this.imported = imported;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(int rejected) {
+        this.rejected = rejected;
+    }
+
+    /**
+     * @return messages of the first rejected rows, the number of messages is limited
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+}
@@ -0,0 +1,38 @@
+package ru.walkername.movie_catalog.dto;
+
+import java.util.List;
+
+/**
+ * @param <T> Movie or MovieSummary, depending on requested fields
+ */
+public class MovieSearchResponse<T> {
+
+    private List<T> movies;
+
+    private int total;
+
+    public MovieSearchResponse() {
+
+    }
+
+    public MovieSearchResponse(List<T> movies, int total) {
+        this.movies = movies;
+        this.total = total;
+    }
+
+    public List<T> getMovies() {
+        return movies;
+    }
+
+    public void setMovies(List<T> movies) {
+        this.movies = movies;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+}
@@ -0,0 +1,122 @@
+package ru.walkername.movie_catalog.dto;
+
+/**
+ * Statistics of the ratings of a movie, derived from its rating histogram.
+ * The histogram may hold fewer ratings than the movie has (movies rated before it existed),
+ * complete tells whether it holds all of them.
+ */
+public class MovieStats {
+
+    private int movieId;
+
+    // Element i is the number of ratings equal to i
+    private int[] histogram;
+
+    // Number of ratings in the histogram
+    private long count;
+
+    // Number of ratings of the movie
+    private int scores;
+
+    // count == scores: median and standardDeviation describe all ratings, not a part of them
+    private boolean complete;
+
+    // Mean and bayesianScore come from the sum of all ratings, so they are exact even if the histogram is incomplete
+    private double mean;
+
+    private double median;
+
+    private double standardDeviation;
+
+    // Mean pulled towards the catalog mean, see RatingHistogram#bayesianScore
+    private double bayesianScore;
+
+    public MovieStats() {
+
+    }
+
+    public MovieStats(int movieId, int[] histogram, long count, int scores, double mean, double median,
+                      double standardDeviation, double bayesianScore) {
+        this.movieId = movieId;
+        this.histogram = histogram;
+        this.count = count;
+        this.scores = scores;
+        this.complete = count == scores;
+        this.mean = mean;
+        this.median = median;
+        this.standardDeviation = standardDeviation;
+        this.bayesianScore = bayesianScore;
+    }
+
+    public int getMovieId() {
+        return movieId;
+    }
+
+    public void setMovieId(int movieId) {
+        this.movieId = movieId;
+    }
+
+    public int[] getHistogram() {
+        return histogram;
+    }
+
+    public void setHistogram(int[] histogram) {
+        this.histogram = histogram;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public int getScores() {
+        return scores;
+    }
+
+    public void setScores(int scores) {
+        this.scores = scores;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public void setComplete(boolean complete) {
+        this.complete = complete;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public void setMean(double mean) {
+        this.mean = mean;
+    }
+
+    public double getMedian() {
+        return median;
+    }
+
+    public void setMedian(double median) {
+        this.median = median;
+    }
+
+    public double getStandardDeviation() {
+        return standardDeviation;
+    }
+
+    public void setStandardDeviation(double standardDeviation) {
+        this.standardDeviation = standardDeviation;
+    }
+
+    public double getBayesianScore() {
+        return bayesianScore;
+    }
+
+    public void setBayesianScore(double bayesianScore) {
+        this.bayesianScore = bayesianScore;
+    }
+}
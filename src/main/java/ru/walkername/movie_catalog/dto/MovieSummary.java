@@ -0,0 +1,79 @@
+package ru.walkername.movie_catalog.dto;
+
+import org.springframework.data.annotation.PersistenceCreator;
+import ru.walkername.movie_catalog.models.Movie;
+
+/**
+ * Movie without description, used by list and search endpoints
+ */
+public class MovieSummary {
+
+    private int id;
+
+    private String title;
+
+    private int releaseYear;
+
+    private double averageRating;
+
+    private int scores;
+
+    public MovieSummary() {
+
+    }
+
+    // Spring Data builds class projections from the constructor it prefers, without this it takes the no-arg one
+    // and falls back to selecting whole entities
+    @PersistenceCreator
+    public MovieSummary(int id, String title, int releaseYear, double averageRating, int scores) {
+        this.id = id;
+        this.title = title;
+        this.releaseYear = releaseYear;
+        this.averageRating = averageRating;
+        this.scores = scores;
+    }
+
+    public MovieSummary(Movie movie) {
+        this(movie.getId(), movie.getTitle(), movie.getReleaseYear(), movie.getAverageRating(), movie.getScores());
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public int getReleaseYear() {
+        return releaseYear;
+    }
+
+    public void setReleaseYear(int releaseYear) {
+        this.releaseYear = releaseYear;
+    }
+
+    public double getAverageRating() {
+        return averageRating;
+    }
+
+    public void setAverageRating(double averageRating) {
+        this.averageRating = averageRating;
+    }
+
+    public int getScores() {
+        return scores;
+    }
+
+    public void setScores(int scores) {
+        this.scores = scores;
+    }
+}
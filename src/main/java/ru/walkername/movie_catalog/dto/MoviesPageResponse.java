@@ -0,0 +1,38 @@
+package ru.walkername.movie_catalog.dto;
+
+import java.util.List;
+
+/**
+ * @param <T> Movie or MovieSummary, depending on requested fields
+ */
+public class MoviesPageResponse<T> {
+
+    private List<T> movies;
+
+    private String nextCursor;
+
+    public MoviesPageResponse() {
+
+    }
+
+    public MoviesPageResponse(List<T> movies, String nextCursor) {
+        this.movies = movies;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getMovies() {
+        return movies;
+    }
+
+    public void setMovies(List<T> movies) {
+        this.movies = movies;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -1,5 +1,6 @@
 package ru.walkername.movie_catalog.dto;
 
+import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 
@@ -7,14 +8,28 @@ public class NewRatingDTO {
 
     @Min(value = 0, message = "Rating should be greater than 0")
     @Max(value = 10, message = "Rating should be less than 10")
+    @Digits(integer = 2, fraction = 0, message = "Rating should be a whole number")
     private double rating;
 
     @Min(value = 0, message = "Rating should be greater than 0")
     @Max(value = 10, message = "Rating should be less than 10")
+    @Digits(integer = 2, fraction = 0, message = "Rating should be a whole number")
     private double oldRating;
 
     private boolean update;
 
+    // Author of the rating, optional; when given, cached rating pages of the user are dropped
+    @Min(value = 1, message = "User id should be greater than 0")
+    private Integer userId;
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Integer userId) {
+        this.userId = userId;
+    }
+
     public boolean isUpdate() {
         return update;
     }
@@ -27,7 +42,7 @@ public class NewRatingDTO {
         return rating;
     }
 
-    public void setRating(int rating) {
+    public void setRating(double rating) {
         this.rating = rating;
     }
 
@@ -35,7 +50,7 @@ public class NewRatingDTO {
         return oldRating;
     }
 
-    public void setOldRating(int oldRating) {
+    public void setOldRating(double oldRating) {
         this.oldRating = oldRating;
     }
 }
@@ -0,0 +1,67 @@
+package ru.walkername.movie_catalog.dto;
+
+import ru.walkername.movie_catalog.util.RatingHistogram;
+
+/**
+ * Net change of the ratings of a specific movie:
+ * sum of ratings changes by delta, number of ratings changes by added,
+ * bucket i of the rating histogram changes by buckets[i]
+ */
+public class RatingDelta {
+
+    private final int movieId;
+
+    private double delta;
+
+    private int added;
+
+    private final int[] buckets;
+
+    public RatingDelta(int movieId, double delta, int added) {
+        this(movieId, delta, added, new int[RatingHistogram.BUCKETS]);
+    }
+
+    public RatingDelta(int movieId, double delta, int added, int[] buckets) {
+        this.movieId = movieId;
+        this.delta = delta;
+        this.added = added;
+        this.buckets = buckets;
+    }
+
+    public static RatingDelta of(int movieId, NewRatingDTO ratingDTO) {
+        int[] buckets = new int[RatingHistogram.BUCKETS];
+        buckets[RatingHistogram.bucket(ratingDTO.getRating())]++;
+        if (!ratingDTO.isUpdate()) {
+            return new RatingDelta(movieId, ratingDTO.getRating(), 1, buckets);
+        }
+        buckets[RatingHistogram.bucket(ratingDTO.getOldRating())]--;
+        return new RatingDelta(movieId, ratingDTO.getRating() - ratingDTO.getOldRating(), 0, buckets);
+    }
+
+    /**
+     * Method to merge other change of the same movie into this one
+     */
+    public void merge(RatingDelta other) {
+        this.delta += other.delta;
+        this.added += other.added;
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] += other.buckets[i];
+        }
+    }
+
+    public int getMovieId() {
+        return movieId;
+    }
+
+    public double getDelta() {
+        return delta;
+    }
+
+    public int getAdded() {
+        return added;
+    }
+
+    public int[] getBuckets() {
+        return buckets;
+    }
+}
@@ -0,0 +1,20 @@
+package ru.walkername.movie_catalog.dto;
+
+import jakarta.validation.constraints.Min;
+
+/**
+ * Rating change of a specific movie, used by bulk rating updates
+ */
+public class RatingEventDTO extends NewRatingDTO {
+
+    @Min(value = 1, message = "Movie id should be greater than 0")
+    private int movieId;
+
+    public int getMovieId() {
+        return movieId;
+    }
+
+    public void setMovieId(int movieId) {
+        this.movieId = movieId;
+    }
+}
@@ -0,0 +1,22 @@
+package ru.walkername.movie_catalog.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class RatingEventsDTO {
+
+    @NotEmpty(message = "Rating events should not be empty")
+    @Size(max = 10000, message = "Rating events should be less than 10000 per request")
+    private List<@Valid RatingEventDTO> events;
+
+    public List<RatingEventDTO> getEvents() {
+        return events;
+    }
+
+    public void setEvents(List<RatingEventDTO> events) {
+        this.events = events;
+    }
+}
@@ -1,12 +1,24 @@
 package ru.walkername.movie_catalog.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+import ru.walkername.movie_catalog.util.RatingHistogram;
+
+import java.util.Arrays;
 
 @Entity
-@Table(name = "movie")
+@Table(name = "movie", indexes = {
+        @Index(name = "movie_average_rating_id_idx", columnList = "average_rating, id"),
+        @Index(name = "movie_rank_score_id_idx", columnList = "rank_score, id")
+}, uniqueConstraints = {
+        // Key of the bulk import, see MoviesJdbcRepository#insertMovies
+        @UniqueConstraint(name = "movie_title_release_year_key", columnNames = {"title", "release_year"})
+})
 public class Movie {
 
     @Id
@@ -27,12 +39,39 @@ public class Movie {
     @Column(name = "description")
     private String description;
 
-    @Column(name = "average_rating")
+    // Rating columns are changed only by the rating statements of MoviesJdbcRepository,
+    // so merges of a cached movie never write them back
+    @Column(name = "average_rating", updatable = false)
     private double averageRating;
 
-    @Column(name = "scores")
+    @Column(name = "scores", updatable = false)
     private int scores;
 
+    @JsonIgnore
+    @Column(name = "rating_sum", columnDefinition = "double precision default 0 not null", updatable = false)
+    private double ratingSum;
+
+    // Weighted rating, see CatalogRating#rankScore; maintained by the same statements as ratingSum and scores.
+    // Recomputing it with a new catalog mean doesn't change the version (the ETag of the movie),
+    // so it is left out of JSON, and merges of a cached movie never write it back
+    @JsonIgnore
+    @Column(name = "rank_score", columnDefinition = "double precision default 0 not null", updatable = false)
+    private double rankScore;
+
+    // Number of ratings of every value from 0 to 10, changed only together with ratingSum and scores;
+    // served through /movies/{id}/stats
+    @JsonIgnore
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(name = "rating_histogram", columnDefinition = "integer[] default array_fill(0, array[11]) not null", updatable = false)
+    private int[] ratingHistogram = new int[RatingHistogram.BUCKETS];
+
+    // Incremented by every change of the row, including bulk SQL updates; also the ETag of the movie,
+    // so it is sent as that header rather than in JSON
+    @JsonIgnore
+    @Version
+    @Column(name = "version", columnDefinition = "bigint default 0 not null")
+    private long version;
+
     public Movie() {
 
     }
@@ -45,6 +84,22 @@ public class Movie {
         this.scores = scores;
     }
 
+    /**
+     * Creates a detached copy of the movie
+     */
+    public Movie(Movie other) {
+        this.id = other.id;
+        this.title = other.title;
+        this.releaseYear = other.releaseYear;
+        this.description = other.description;
+        this.averageRating = other.averageRating;
+        this.scores = other.scores;
+        this.ratingSum = other.ratingSum;
+        this.rankScore = other.rankScore;
+        this.ratingHistogram = other.ratingHistogram.clone();
+        this.version = other.version;
+    }
+
     public int getId() {
         return id;
     }
@@ -93,6 +148,38 @@ public class Movie {
         this.scores = scores;
     }
 
+    public double getRatingSum() {
+        return ratingSum;
+    }
+
+    public void setRatingSum(double ratingSum) {
+        this.ratingSum = ratingSum;
+    }
+
+    public double getRankScore() {
+        return rankScore;
+    }
+
+    public void setRankScore(double rankScore) {
+        this.rankScore = rankScore;
+    }
+
+    public int[] getRatingHistogram() {
+        return ratingHistogram;
+    }
+
+    public void setRatingHistogram(int[] ratingHistogram) {
+        this.ratingHistogram = ratingHistogram;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return "Movie{" +
@@ -102,6 +189,10 @@ public class Movie {
                 ", description='" + description + '\'' +
                 ", averageRating=" + averageRating +
                 ", scores=" + scores +
+                ", ratingSum=" + ratingSum +
+                ", rankScore=" + rankScore +
+                ", ratingHistogram=" + Arrays.toString(ratingHistogram) +
+                ", version=" + version +
                 '}';
     }
 }
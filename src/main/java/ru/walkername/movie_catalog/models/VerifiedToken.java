@@ -0,0 +1,42 @@
+package ru.walkername.movie_catalog.models;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Principal and authorities decoded from a JWT token that passed verification
+ */
+public class VerifiedToken {
+
+    private final String username;
+
+    private final List<GrantedAuthority> authorities;
+
+    // null if the token has no expiration time
+    private final Instant expiresAt;
+
+    public VerifiedToken(String username, String role, Instant expiresAt) {
+        this.username = username;
+        this.authorities = List.of(new SimpleGrantedAuthority(role));
+        this.expiresAt = expiresAt;
+    }
+
+    public boolean isExpiredAt(Instant now) {
+        return expiresAt != null && !now.isBefore(expiresAt);
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public List<GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+}
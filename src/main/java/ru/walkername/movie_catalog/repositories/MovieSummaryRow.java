@@ -0,0 +1,18 @@
+package ru.walkername.movie_catalog.repositories;
+
+/**
+ * Projection of native queries that select the columns of MovieSummary
+ */
+public interface MovieSummaryRow {
+
+    int getId();
+
+    String getTitle();
+
+    int getReleaseYear();
+
+    double getAverageRating();
+
+    int getScores();
+
+}
@@ -0,0 +1,180 @@
+package ru.walkername.movie_catalog.repositories;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.walkername.movie_catalog.dto.MovieDTO;
+import ru.walkername.movie_catalog.dto.RatingDelta;
+import ru.walkername.movie_catalog.util.RatingHistogram;
+
+import java.sql.Connection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * Bulk operations on movies that are done with plain JDBC batches
+ */
+@Repository
+public class MoviesJdbcRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    // Buckets are clamped at 0: an update with a wrong old rating can't make the histogram negative.
+    // The sum and scores still take the update, so the histogram then holds fewer ratings than scores,
+    // which MovieStats reports as an incomplete histogram
+    private static final String ADD_RATING_SQL = "UPDATE movie SET rating_sum = rating_sum + ?, scores = scores + ?, " +
+            "average_rating = (rating_sum + ?) / (scores + ?), version = version + 1, " +
+            "rank_score = (rating_sum + ? + ?) / (scores + ? + ?), " +
+            "rating_histogram = " + histogramIncrement() + " " +
+            "WHERE id = ? AND scores + ? > 0";
+
+    // Rows come as three arrays, so a batch is one statement and RETURNING tells exactly which rows were written
+    private static final String INSERT_ROWS_SQL = "INSERT INTO movie (title, release_year, description, " +
+            "average_rating, scores, rating_sum, version, rank_score) " +
+            "SELECT title, release_year, description, 0, 0, 0, 0, ? " +
+            "FROM unnest(?::text[], ?::int[], ?::text[]) AS imported(title, release_year, description) ";
+
+    private static final String INSERT_SQL = INSERT_ROWS_SQL +
+            "ON CONFLICT (title, release_year) DO NOTHING " +
+            "RETURNING title, release_year";
+
+    private static final String UPSERT_SQL = INSERT_ROWS_SQL +
+            "ON CONFLICT (title, release_year) DO UPDATE SET description = EXCLUDED.description, " +
+            "version = movie.version + 1 " +
+            "RETURNING title, release_year";
+
+    private static final String RANK_SCORE = "COALESCE((rating_sum + ?) / NULLIF(scores + ?, 0), 0)";
+
+    // Rows that already have the score are skipped, so an unchanged prior costs a read but no writes.
+    // The version is kept: rank score is not a part of the movie's body, see Movie#rankScore
+    private static final String RERANK_SQL = "UPDATE movie SET rank_score = " + RANK_SCORE + " " +
+            "WHERE id > ? AND id <= ? AND rank_score IS DISTINCT FROM " + RANK_SCORE;
+
+    private static final String MAX_ID_SQL = "SELECT COALESCE(max(id), 0) FROM movie";
+
+    private static final String ESTIMATE_COUNT_SQL = "SELECT reltuples::bigint FROM pg_class WHERE oid = 'movie'::regclass";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public MoviesJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Atomically adds ratings to the stored sum, count and histogram and derives average rating and rank score from them.
+     * Concurrent calls never lose an update: every row is changed by a single UPDATE statement.
+     * @param deltas net rating changes, at most one per movie
+     * @param priorSum sum of the imaginary ratings of the rank score (prior weight * catalog mean)
+     * @param priorWeight number of the imaginary ratings of the rank score
+     * @return number of updated rows per delta, 0 if there is no such movie or it has no ratings
+     */
+    public int[] addRatings(List<RatingDelta> deltas, double priorSum, double priorWeight) {
+        int[][] counts = jdbcTemplate.batchUpdate(ADD_RATING_SQL, deltas, BATCH_SIZE, (ps, delta) -> {
+            int index = 1;
+            ps.setDouble(index++, delta.getDelta());
+            ps.setInt(index++, delta.getAdded());
+            ps.setDouble(index++, delta.getDelta());
+            ps.setInt(index++, delta.getAdded());
+            ps.setDouble(index++, delta.getDelta());
+            ps.setDouble(index++, priorSum);
+            ps.setInt(index++, delta.getAdded());
+            ps.setDouble(index++, priorWeight);
+            for (int bucket : delta.getBuckets()) {
+                ps.setInt(index++, bucket);
+            }
+            ps.setInt(index++, delta.getMovieId());
+            ps.setInt(index, delta.getAdded());
+        });
+        return flatten(counts, deltas.size());
+    }
+
+    /**
+     * Recomputes rank scores of all movies with a new prior, one range of ids per statement.
+     * Must be called outside of a transaction: every range is committed on its own,
+     * so rows are locked only for the time of their range, not of the whole catalog
+     * @param batchSize width of an id range
+     * @return number of movies whose rank score changed
+     */
+    public int rerank(double priorSum, double priorWeight, int batchSize) {
+        Integer maxId = jdbcTemplate.queryForObject(MAX_ID_SQL, Integer.class);
+        int changed = 0;
+        for (long from = 0; maxId != null && from < maxId; from += batchSize) {
+            long to = Math.min(from + batchSize, maxId);
+            changed += jdbcTemplate.update(RERANK_SQL, priorSum, priorWeight, from, to, priorSum, priorWeight);
+        }
+        return changed;
+    }
+
+    /**
+     * @return number of rows of the movie table estimated by the planner, -1 if the table was never analyzed
+     */
+    public long estimateCount() {
+        Long estimate = jdbcTemplate.queryForObject(ESTIMATE_COUNT_SQL, Long.class);
+        return estimate == null ? -1 : estimate;
+    }
+
+    /**
+     * Inserts new movies with a single statement, movies are matched by (title, releaseYear)
+     * @param movies validated movies, in upsert mode no two of them may have the same title and release year
+     * @param upsert 'true' -> description of an existing movie is replaced; 'false' -> existing movie is kept
+     * @param rankScore rank score of a movie without ratings, given to inserted movies
+     * @return per movie: true if it was written, false if an existing movie (or an earlier duplicate) was kept
+     */
+    public boolean[] insertMovies(List<MovieDTO> movies, boolean upsert, double rankScore) {
+        String[] titles = new String[movies.size()];
+        Integer[] releaseYears = new Integer[movies.size()];
+        String[] descriptions = new String[movies.size()];
+        for (int i = 0; i < movies.size(); i++) {
+            MovieDTO movie = movies.get(i);
+            titles[i] = movie.getTitle();
+            releaseYears[i] = movie.getReleaseYear();
+            descriptions[i] = movie.getDescription();
+        }
+
+        Set<MovieKey> written = new HashSet<>();
+        jdbcTemplate.query(upsert ? UPSERT_SQL : INSERT_SQL, ps -> {
+            Connection connection = ps.getConnection();
+            ps.setDouble(1, rankScore);
+            ps.setArray(2, connection.createArrayOf("text", titles));
+            ps.setArray(3, connection.createArrayOf("integer", releaseYears));
+            ps.setArray(4, connection.createArrayOf("text", descriptions));
+        }, (RowCallbackHandler) rs -> written.add(new MovieKey(rs.getString(1), rs.getInt(2))));
+
+        boolean[] result = new boolean[movies.size()];
+        for (int i = 0; i < result.length; i++) {
+            // Only the first of duplicates is counted, later ones were skipped by ON CONFLICT DO NOTHING
+            result[i] = written.remove(new MovieKey(titles[i], releaseYears[i]));
+        }
+        return result;
+    }
+
+    private static int[] flatten(int[][] counts, int size) {
+        int[] flat = new int[size];
+        int i = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                flat[i++] = count;
+            }
+        }
+        return flat;
+    }
+
+    /**
+     * @return ARRAY[GREATEST(rating_histogram[1] + ?, 0), ...] with a parameter per bucket (Postgres arrays are 1-based)
+     */
+    private static String histogramIncrement() {
+        StringJoiner elements = new StringJoiner(", ", "ARRAY[", "]");
+        for (int i = 1; i <= RatingHistogram.BUCKETS; i++) {
+            elements.add("GREATEST(rating_histogram[" + i + "] + ?, 0)");
+        }
+        return elements.toString();
+    }
+
+    private record MovieKey(String title, int releaseYear) {
+
+    }
+}
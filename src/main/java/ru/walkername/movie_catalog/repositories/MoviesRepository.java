@@ -1,13 +1,103 @@
 package ru.walkername.movie_catalog.repositories;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import ru.walkername.movie_catalog.dto.MovieSummary;
 import ru.walkername.movie_catalog.models.Movie;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface MoviesRepository extends JpaRepository<Movie, Integer> {
 
-    List<Movie> findByTitleStartingWith(String title);
+    // Aliases are quoted, otherwise Postgres folds them to lower case and they don't match MovieSummaryRow
+    String SUMMARY_COLUMNS = "id, title, release_year AS \"releaseYear\", average_rating AS \"averageRating\", scores";
+
+    /**
+     * @return rows of [id, title, averageRating, version] of all movies
+     */
+    @Query("SELECT m.id, m.title, m.averageRating, m.version FROM Movie m")
+    List<Object[]> findAllTitlesAndRatings();
+
+    /**
+     * @return mean of all ratings of the catalog, null if nothing was rated
+     */
+    @Query("SELECT SUM(m.ratingSum) / SUM(m.scores) FROM Movie m WHERE m.scores > 0")
+    Double findGlobalAverageRating();
+
+    List<Movie> findAllByIdGreaterThanOrderByIdAsc(int id, Limit limit);
+
+    /**
+     * Streams all movies through a server-side cursor, must be consumed and closed
+     * inside a transaction (Postgres ignores fetch size in auto-commit mode)
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT m FROM Movie m ORDER BY m.id")
+    Stream<Movie> streamAll();
+
+    /**
+     * @param type Movie or MovieSummary
+     */
+    <T> List<T> findAllByOrderByAverageRatingDescIdDesc(Limit limit, Class<T> type);
+
+    /**
+     * @param type Movie or MovieSummary
+     */
+    <T> List<T> findAllByOrderByAverageRatingAscIdAsc(Limit limit, Class<T> type);
+
+    @Query("SELECT new ru.walkername.movie_catalog.dto.MovieSummary(m.id, m.title, m.releaseYear, m.averageRating, m.scores) FROM Movie m")
+    List<MovieSummary> findAllSummaries(Pageable pageable);
+
+    @Query("SELECT new ru.walkername.movie_catalog.dto.MovieSummary(m.id, m.title, m.releaseYear, m.averageRating, m.scores) FROM Movie m WHERE m.id IN :ids")
+    List<MovieSummary> findSummariesByIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Keyset page of movies after (averageRating, id) in descending order, served by movie_average_rating_id_idx
+     */
+    @Query(value = "SELECT " + SUMMARY_COLUMNS + " FROM movie WHERE (average_rating, id) < (:rating, :id) " +
+            "ORDER BY average_rating DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<MovieSummaryRow> findPageAfterDescending(@Param("rating") double rating, @Param("id") int id, @Param("limit") int limit);
+
+    /**
+     * Keyset page of movies after (averageRating, id) in ascending order, served by movie_average_rating_id_idx
+     */
+    @Query(value = "SELECT " + SUMMARY_COLUMNS + " FROM movie WHERE (average_rating, id) > (:rating, :id) " +
+            "ORDER BY average_rating ASC, id ASC LIMIT :limit", nativeQuery = true)
+    List<MovieSummaryRow> findPageAfterAscending(@Param("rating") double rating, @Param("id") int id, @Param("limit") int limit);
+
+    /**
+     * Edit of a movie that writes only its own fields: rating columns are left to the rating statements,
+     * and there is no version check, so an edit never conflicts with a concurrent rating
+     * @return number of updated rows
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Movie m SET m.title = :title, m.releaseYear = :releaseYear, m.description = :description, " +
+            "m.version = m.version + 1 WHERE m.id = :id")
+    int updateDetails(
+            @Param("id") int id,
+            @Param("title") String title,
+            @Param("releaseYear") int releaseYear,
+            @Param("description") String description
+    );
+
+    /**
+     * Unlike deleteById, reports whether the movie existed
+     * @return number of deleted rows
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Movie m WHERE m.id = :id")
+    int deleteMovieById(@Param("id") int id);
 }
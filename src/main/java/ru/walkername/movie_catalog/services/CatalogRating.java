@@ -0,0 +1,126 @@
+package ru.walkername.movie_catalog.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.walkername.movie_catalog.dto.MovieStats;
+import ru.walkername.movie_catalog.models.Movie;
+import ru.walkername.movie_catalog.repositories.MoviesJdbcRepository;
+import ru.walkername.movie_catalog.repositories.MoviesRepository;
+import ru.walkername.movie_catalog.util.RatingHistogram;
+
+/**
+ * Mean of all ratings of the catalog, the prior of Bayesian scores and of the stored rank scores.
+ * It moves slowly on a large catalog, so it is recomputed periodically instead of after every rating,
+ * and rank scores of all movies are recomputed only when it has moved by more than the tolerance,
+ * in ranges of ids committed one by one. A rating that is applied while the rank scores are recomputed
+ * may keep the score of the old mean until the next rating of the movie.
+ */
+@Component
+public class CatalogRating {
+
+    private final MoviesRepository moviesRepository;
+
+    private final MoviesJdbcRepository moviesJdbcRepository;
+
+    private final CatalogVersion catalogVersion;
+
+    private final double priorWeight;
+
+    private final double tolerance;
+
+    private final int rerankBatchSize;
+
+    private volatile double mean;
+
+    private volatile boolean ranked;
+
+    @Autowired
+    public CatalogRating(
+            MoviesRepository moviesRepository,
+            MoviesJdbcRepository moviesJdbcRepository,
+            CatalogVersion catalogVersion,
+            @Value("${movies.stats.prior-weight:25}") double priorWeight,
+            @Value("${movies.stats.mean-tolerance:0.01}") double tolerance,
+            @Value("${movies.stats.rerank-batch-size:1000}") int rerankBatchSize
+    ) {
+        this.moviesRepository = moviesRepository;
+        this.moviesJdbcRepository = moviesJdbcRepository;
+        this.catalogVersion = catalogVersion;
+        this.priorWeight = priorWeight;
+        this.tolerance = tolerance;
+        this.rerankBatchSize = rerankBatchSize;
+    }
+
+    /**
+     * @return catalog mean the rank scores are computed with
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * @return number of imaginary ratings equal to the catalog mean that every movie starts with
+     */
+    public double getPriorWeight() {
+        return priorWeight;
+    }
+
+    /**
+     * @return sum of the imaginary ratings
+     */
+    public double getPriorSum() {
+        return priorWeight * mean;
+    }
+
+    /**
+     * IMDb-style weighted rating: (ratingSum + priorWeight * mean) / (scores + priorWeight).
+     * Same formula as the one MoviesJdbcRepository maintains in the rank_score column
+     */
+    public double rankScore(double ratingSum, int scores) {
+        double weight = scores + priorWeight;
+        return weight == 0 ? 0 : (ratingSum + getPriorSum()) / weight;
+    }
+
+    /**
+     * Method to derive statistics of a movie from its rating histogram.
+     * Mean and Bayesian score are taken from the stored sum and number of ratings, which cover every rating;
+     * median and standard deviation can only come from the histogram, MovieStats#isComplete tells if it covers them all
+     */
+    public MovieStats statsOf(Movie movie) {
+        int[] histogram = movie.getRatingHistogram();
+        return new MovieStats(
+                movie.getId(),
+                histogram.clone(),
+                RatingHistogram.count(histogram),
+                movie.getScores(),
+                movie.getAverageRating(),
+                RatingHistogram.median(histogram),
+                RatingHistogram.standardDeviation(histogram),
+                rankScore(movie.getRatingSum(), movie.getScores())
+        );
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(
+            initialDelayString = "${movies.stats.refresh-interval:PT5M}",
+            fixedDelayString = "${movies.stats.refresh-interval:PT5M}"
+    )
+    public void refresh() {
+        Double globalMean = moviesRepository.findGlobalAverageRating();
+        double fresh = globalMean == null ? 0 : globalMean;
+        if (ranked && Math.abs(fresh - mean) <= tolerance) {
+            return;
+        }
+        // New ratings are scored with the new mean right away, the rest of the catalog catches up below
+        mean = fresh;
+        ranked = true;
+        if (moviesJdbcRepository.rerank(getPriorSum(), priorWeight, rerankBatchSize) > 0) {
+            // Listings sorted by rank changed; cached movies and the leaderboard don't expose rank scores
+            catalogVersion.increment();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package ru.walkername.movie_catalog.services;
+
+import org.springframework.stereotype.Component;
+import ru.walkername.movie_catalog.models.Movie;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counter of catalog changes, the ETag of list and count responses.
+ * The counter lives in memory, so the tag also contains an id of this instance:
+ * tags of different instances or of a restarted instance never match by accident.
+ */
+@Component
+public class CatalogVersion implements MovieChangeListener {
+
+    private final String instanceId = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+
+    private final AtomicLong changes = new AtomicLong();
+
+    /**
+     * Must be read before the response is built: a tag may be older than the data, but never newer
+     */
+    public String etag() {
+        return "\"c" + instanceId + "-" + changes.get() + "\"";
+    }
+
+    /**
+     * Method to register a change that bypassed MoviesService
+     */
+    public void increment() {
+        changes.incrementAndGet();
+    }
+
+    @Override
+    public void movieChanged(Movie movie) {
+        increment();
+    }
+
+    @Override
+    public void movieDeleted(int id) {
+        increment();
+    }
+}
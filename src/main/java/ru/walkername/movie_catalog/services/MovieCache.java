@@ -0,0 +1,100 @@
+package ru.walkername.movie_catalog.services;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.walkername.movie_catalog.models.Movie;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntFunction;
+
+/**
+ * In-process cache of movies by id (Caffeine, W-TinyLFU eviction).
+ * Cached movies are detached snapshots: callers get their own copy,
+ * so changing a returned movie never affects other readers.
+ * Misses are loaded on virtual threads outside of the cache's internal locks:
+ * a synchronous Caffeine load runs inside ConcurrentHashMap.compute, whose monitor would pin the carrier
+ * of a virtual request thread for the whole DB query.
+ */
+@Component
+public class MovieCache {
+
+    private final ExecutorService loadExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AsyncCache<Integer, Movie> cache;
+
+    public MovieCache(
+            @Value("${movies.cache.max-size:10000}") long maxSize,
+            @Value("${movies.cache.expire-after-write:PT10M}") Duration expireAfterWrite
+    ) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .executor(loadExecutor)
+                .buildAsync();
+    }
+
+    /**
+     * Method to get movie from cache or load it on miss.
+     * Concurrent misses of the same movie share one load; a movie invalidated while it is loaded
+     * is returned to the waiting callers, but not cached.
+     * @param id indicates the movie
+     * @param loader loads movie from DB, may return null if there is no such movie (null is not cached);
+     *               runs on another thread, so it must not rely on the caller's transaction
+     * @return copy of the cached movie or null
+     */
+    public Movie get(int id, IntFunction<Movie> loader) {
+        CompletableFuture<Movie> future = cache.get(id, (movieId, executor) ->
+                CompletableFuture.supplyAsync(() -> loader.apply(movieId), executor));
+        Movie movie;
+        try {
+            movie = future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return movie == null ? null : new Movie(movie);
+    }
+
+    /**
+     * Method to get cached movies without loading missing ones
+     * @return cached movies by id, they are shared and must not be modified
+     */
+    public Map<Integer, Movie> getAllPresent(Collection<Integer> ids) {
+        // Movies that are still being loaded are treated as missing
+        return cache.synchronous().getAllPresent(ids);
+    }
+
+    public void invalidate(int id) {
+        cache.synchronous().invalidate(id);
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    public long size() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loadExecutor.shutdownNow();
+    }
+}
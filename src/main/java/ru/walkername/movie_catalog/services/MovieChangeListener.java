@@ -0,0 +1,19 @@
+package ru.walkername.movie_catalog.services;
+
+import ru.walkername.movie_catalog.models.Movie;
+
+/**
+ * Receives changes of movies from {@link MoviesService} after the transaction is committed.
+ * Used to keep in-memory structures in sync with DB.
+ */
+public interface MovieChangeListener {
+
+    /**
+     * Movie was added, edited or its rating changed
+     * @param movie new state of the movie, must not be modified by the listener
+     */
+    void movieChanged(Movie movie);
+
+    void movieDeleted(int id);
+
+}
@@ -0,0 +1,75 @@
+package ru.walkername.movie_catalog.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.walkername.movie_catalog.repositories.MoviesJdbcRepository;
+import ru.walkername.movie_catalog.repositories.MoviesRepository;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Number of movies kept in memory: seeded at startup, adjusted after every committed insert and delete,
+ * and replaced by the exact count periodically. A write that commits while the exact count is running
+ * may be counted twice or missed, such drift lasts until the next reconciliation.
+ * A reconciliation that corrects the number changes the catalog version, so cached count responses are revalidated.
+ */
+@Component
+public class MovieCounter {
+
+    private final MoviesRepository moviesRepository;
+
+    private final MoviesJdbcRepository moviesJdbcRepository;
+
+    private final CatalogVersion catalogVersion;
+
+    private final AtomicLong count = new AtomicLong();
+
+    private volatile boolean seeded;
+
+    @Autowired
+    public MovieCounter(
+            MoviesRepository moviesRepository,
+            MoviesJdbcRepository moviesJdbcRepository,
+            CatalogVersion catalogVersion
+    ) {
+        this.moviesRepository = moviesRepository;
+        this.moviesJdbcRepository = moviesJdbcRepository;
+        this.catalogVersion = catalogVersion;
+    }
+
+    /**
+     * @return number of movies, counted by DB only until the counter is seeded
+     */
+    public long get() {
+        return seeded ? count.get() : moviesRepository.count();
+    }
+
+    /**
+     * Method to get the planner's estimate, which costs nothing on a huge table, but may be off by a few percent
+     * @return estimate or the kept number if the table was never analyzed
+     */
+    public long estimate() {
+        long estimate = moviesJdbcRepository.estimateCount();
+        return estimate < 0 ? get() : estimate;
+    }
+
+    public void add(long delta) {
+        count.addAndGet(delta);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(
+            initialDelayString = "${movies.counter.reconcile-interval:PT1M}",
+            fixedDelayString = "${movies.counter.reconcile-interval:PT1M}"
+    )
+    public void reconcile() {
+        long exact = moviesRepository.count();
+        if (count.getAndSet(exact) != exact) {
+            catalogVersion.increment();
+        }
+        seeded = true;
+    }
+}
@@ -0,0 +1,93 @@
+package ru.walkername.movie_catalog.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.walkername.movie_catalog.models.Movie;
+import ru.walkername.movie_catalog.repositories.MoviesRepository;
+import ru.walkername.movie_catalog.util.MovieCsv;
+import ru.walkername.movie_catalog.util.MovieFileFormat;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Export of the whole catalog. Movies are read through a DB cursor and written one by one,
+ * each movie is detached right after it is written, so memory doesn't depend on the catalog size.
+ */
+@Service
+public class MovieExportService {
+
+    private final MoviesRepository moviesRepository;
+
+    private final EntityManager entityManager;
+
+    private final ObjectWriter movieWriter;
+
+    @Autowired
+    public MovieExportService(MoviesRepository moviesRepository, EntityManager entityManager, ObjectMapper objectMapper) {
+        this.moviesRepository = moviesRepository;
+        this.entityManager = entityManager;
+        this.movieWriter = objectMapper.writerFor(Movie.class).withRootValueSeparator("\n");
+    }
+
+    /**
+     * Method to write all movies ordered by id
+     * @param out destination, it is not closed
+     * @param format NDJSON (one movie per line) or CSV with header, CSV can be imported back
+     */
+    @Transactional(readOnly = true)
+    public void exportMovies(OutputStream out, MovieFileFormat format) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        try (Stream<Movie> movies = moviesRepository.streamAll()) {
+            if (format == MovieFileFormat.NDJSON) {
+                writeNdjson(movies.iterator(), writer);
+            } else {
+                writeCsv(movies.iterator(), writer);
+            }
+        }
+        writer.flush();
+    }
+
+    private void writeNdjson(Iterator<Movie> movies, Writer writer) throws IOException {
+        if (!movies.hasNext()) {
+            return;
+        }
+        // Separator goes only between movies, the last line is terminated below
+        SequenceWriter sequence = movieWriter.writeValues(writer);
+        while (movies.hasNext()) {
+            Movie movie = movies.next();
+            sequence.write(movie);
+            entityManager.detach(movie);
+        }
+        sequence.flush();
+        writer.write('\n');
+    }
+
+    private void writeCsv(Iterator<Movie> movies, Writer writer) throws IOException {
+        MovieCsv.writeRecord(writer, "id", "title", "releaseYear", "description", "averageRating", "scores");
+        while (movies.hasNext()) {
+            Movie movie = movies.next();
+            MovieCsv.writeRecord(
+                    writer,
+                    Integer.toString(movie.getId()),
+                    movie.getTitle(),
+                    Integer.toString(movie.getReleaseYear()),
+                    movie.getDescription(),
+                    Double.toString(movie.getAverageRating()),
+                    Integer.toString(movie.getScores())
+            );
+            entityManager.detach(movie);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package ru.walkername.movie_catalog.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.walkername.movie_catalog.config.SchemaUpgrade;
+import ru.walkername.movie_catalog.dto.MovieDTO;
+import ru.walkername.movie_catalog.dto.MovieImportResponse;
+import ru.walkername.movie_catalog.repositories.MoviesJdbcRepository;
+import ru.walkername.movie_catalog.util.MovieCsv;
+import ru.walkername.movie_catalog.util.MovieFileFormat;
+import ru.walkername.movie_catalog.util.MovieImportUnavailableException;
+import ru.walkername.movie_catalog.util.MovieWrongValidationException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Bulk import of movies from NDJSON or CSV.
+ * The body is read row by row and written in batches of one statement each, so memory doesn't depend on its size.
+ * Every batch is committed on its own: rows before a failed batch stay imported,
+ * upsert mode makes repeating the whole import safe.
+ */
+@Service
+public class MovieImportService {
+
+    public enum Mode {
+        INSERT, UPSERT;
+
+        /**
+         * @throws MovieWrongValidationException if the mode is not supported
+         */
+        public static Mode of(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new MovieWrongValidationException("mode - should be 'insert' or 'upsert';");
+            }
+        }
+    }
+
+    private final MoviesJdbcRepository moviesJdbcRepository;
+
+    private final ObjectReader movieReader;
+
+    private final Validator validator;
+
+    private final MovieCache movieCache;
+
+    private final MovieLeaderboard movieLeaderboard;
+
+    private final MovieTitleIndex movieTitleIndex;
+
+    private final MovieSearchIndex movieSearchIndex;
+
+    private final CatalogVersion catalogVersion;
+
+    private final MovieCounter movieCounter;
+
+    private final CatalogRating catalogRating;
+
+    private final SchemaUpgrade schemaUpgrade;
+
+    private final int batchSize;
+
+    private final int maxErrors;
+
+    @Autowired
+    public MovieImportService(
+            MoviesJdbcRepository moviesJdbcRepository,
+            ObjectMapper objectMapper,
+            Validator validator,
+            MovieCache movieCache,
+            MovieLeaderboard movieLeaderboard,
+            MovieTitleIndex movieTitleIndex,
+            MovieSearchIndex movieSearchIndex,
+            CatalogVersion catalogVersion,
+            MovieCounter movieCounter,
+            CatalogRating catalogRating,
+            SchemaUpgrade schemaUpgrade,
+            @Value("${movies.import.batch-size:1000}") int batchSize,
+            @Value("${movies.import.max-errors:100}") int maxErrors
+    ) {
+        this.moviesJdbcRepository = moviesJdbcRepository;
+        this.movieReader = objectMapper.readerFor(MovieDTO.class);
+        this.validator = validator;
+        this.movieCache = movieCache;
+        this.movieLeaderboard = movieLeaderboard;
+        this.movieTitleIndex = movieTitleIndex;
+        this.movieSearchIndex = movieSearchIndex;
+        this.catalogVersion = catalogVersion;
+        this.movieCounter = movieCounter;
+        this.catalogRating = catalogRating;
+        this.schemaUpgrade = schemaUpgrade;
+        this.batchSize = batchSize;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Method to import movies, rows are numbered from 1 not counting the CSV header
+     * @param body NDJSON (one movie per line) or CSV with header of title, releaseYear and description
+     * @param mode INSERT -> existing movies are rejected; UPSERT -> their descriptions are replaced
+     * @return numbers of imported and rejected rows and messages of the first rejected rows
+     * @throws MovieImportUnavailableException if the table has no unique constraint on title and release year
+     */
+    public MovieImportResponse importMovies(InputStream body, MovieFileFormat format, Mode mode) throws IOException {
+        if (!schemaUpgrade.ensureTitleReleaseYearKey()) {
+            throw new MovieImportUnavailableException(
+                    "Import is unavailable: several movies have the same title and release year, merge them first"
+            );
+        }
+        Batch batch = new Batch(mode == Mode.UPSERT);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            if (format == MovieFileFormat.NDJSON) {
+                readNdjson(reader, batch);
+            } else {
+                readCsv(reader, batch);
+            }
+            batch.flush();
+        } finally {
+            if (batch.imported > 0) {
+                // Imported rows bypass JPA, so everything built from the table is refreshed
+                movieCache.invalidateAll();
+                catalogVersion.increment();
+                // Upserted rows are not told apart from inserted ones, so the number is taken from DB
+                movieCounter.reconcile();
+                movieLeaderboard.rebuild();
+                movieTitleIndex.rebuild();
+                movieSearchIndex.rebuild();
+            }
+        }
+        return new MovieImportResponse(batch.imported, batch.rejected, batch.errors);
+    }
+
+    private void readNdjson(BufferedReader reader, Batch batch) throws IOException {
+        int row = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            row++;
+            if (line.isBlank()) {
+                continue;
+            }
+            MovieDTO movie;
+            try {
+                movie = movieReader.readValue(line);
+            } catch (JsonProcessingException e) {
+                batch.reject(row, "invalid JSON");
+                continue;
+            }
+            // Other non-object values fail to bind above, but a 'null' line is read as null
+            if (movie == null) {
+                batch.reject(row, "should be a JSON object");
+                continue;
+            }
+            batch.add(row, movie);
+        }
+    }
+
+    private void readCsv(BufferedReader reader, Batch batch) throws IOException {
+        List<String> header = MovieCsv.readRecord(reader);
+        if (header == null) {
+            return;
+        }
+        int titleColumn = header.indexOf("title");
+        int releaseYearColumn = header.indexOf("releaseYear");
+        int descriptionColumn = header.indexOf("description");
+        if (titleColumn < 0 || releaseYearColumn < 0) {
+            throw new MovieWrongValidationException("csv - header should contain title and releaseYear;");
+        }
+
+        int row = 0;
+        List<String> record;
+        while ((record = MovieCsv.readRecord(reader)) != null) {
+            row++;
+            if (record.size() == 1 && record.get(0).isEmpty()) {
+                continue;
+            }
+            if (record.size() != header.size()) {
+                batch.reject(row, "expected " + header.size() + " fields, got " + record.size());
+                continue;
+            }
+            MovieDTO movie = new MovieDTO();
+            movie.setTitle(record.get(titleColumn));
+            try {
+                movie.setReleaseYear(Integer.parseInt(record.get(releaseYearColumn).trim()));
+            } catch (NumberFormatException e) {
+                batch.reject(row, "releaseYear - should be a number");
+                continue;
+            }
+            if (descriptionColumn >= 0) {
+                movie.setDescription(record.get(descriptionColumn));
+            }
+            batch.add(row, movie);
+        }
+    }
+
+    private class Batch {
+
+        private final boolean upsert;
+
+        private final List<MovieDTO> movies = new ArrayList<>(batchSize);
+
+        private final List<Integer> rows = new ArrayList<>(batchSize);
+
+        // Upsert can't change the same movie twice in one statement, so a repeated movie starts a new batch
+        private final Set<String> keys = new HashSet<>();
+
+        private final List<String> errors = new ArrayList<>();
+
+        private int imported;
+
+        private int rejected;
+
+        private Batch(boolean upsert) {
+            this.upsert = upsert;
+        }
+
+        private void add(int row, MovieDTO movie) {
+            Set<ConstraintViolation<MovieDTO>> violations = validator.validate(movie);
+            if (!violations.isEmpty()) {
+                StringBuilder message = new StringBuilder();
+                for (ConstraintViolation<MovieDTO> violation : violations) {
+                    message.append(violation.getPropertyPath())
+                            .append(" - ")
+                            .append(violation.getMessage())
+                            .append(";");
+                }
+                reject(row, message.toString());
+                return;
+            }
+            if (upsert) {
+                // Postgres text can't contain NUL, so it can't be a part of a title
+                String key = movie.getTitle() + '\u0000' + movie.getReleaseYear();
+                if (!keys.add(key)) {
+                    flush();
+                    keys.add(key);
+                }
+            }
+            movies.add(movie);
+            rows.add(row);
+            if (movies.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        private void reject(int row, String message) {
+            rejected++;
+            if (errors.size() < maxErrors) {
+                errors.add("row " + row + ": " + message);
+            }
+        }
+
+        private void flush() {
+            if (movies.isEmpty()) {
+                return;
+            }
+            boolean[] written = moviesJdbcRepository.insertMovies(movies, upsert, catalogRating.rankScore(0, 0));
+            for (int i = 0; i < written.length; i++) {
+                if (written[i]) {
+                    imported++;
+                } else {
+                    reject(rows.get(i), "movie with the same title and release year already exists");
+                }
+            }
+            movies.clear();
+            rows.clear();
+            keys.clear();
+        }
+    }
+}
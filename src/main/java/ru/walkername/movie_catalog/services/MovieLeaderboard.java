@@ -0,0 +1,158 @@
+package ru.walkername.movie_catalog.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.walkername.movie_catalog.models.Movie;
+import ru.walkername.movie_catalog.repositories.MoviesRepository;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Top movies by average rating kept in memory, in the order of the descending listing
+ * (averageRating desc, id desc).
+ * <br>Invariant: every movie that is not on the board ranks below every movie on the board,
+ * so the board is always an exact prefix of the listing. When a movie drops below the tail,
+ * it leaves the board and the board gets shorter until the next rebuild.
+ */
+@Component
+public class MovieLeaderboard implements MovieChangeListener {
+
+    private static final Comparator<Movie> ORDER = Comparator
+            .comparingDouble(Movie::getAverageRating)
+            .thenComparingInt(Movie::getId)
+            .reversed();
+
+    private final MoviesRepository moviesRepository;
+
+    private final int capacity;
+
+    // ReentrantLock instead of synchronized: the lock is held during DB queries,
+    // and a virtual thread blocked inside synchronized would pin its carrier thread
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Sorted by ORDER, replaced as a whole on every change
+    private volatile Movie[] ranked = new Movie[0];
+
+    // Whether the board holds the whole catalog
+    private volatile boolean complete;
+
+    @Autowired
+    public MovieLeaderboard(
+            MoviesRepository moviesRepository,
+            @Value("${movies.leaderboard.capacity:5000}") int capacity
+    ) {
+        this.moviesRepository = moviesRepository;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Method to get page of the descending listing from memory
+     * @return movies of the page or null if the page is not entirely on the board
+     */
+    public List<Movie> getPage(int page, int moviesPerPage) {
+        Movie[] current = ranked;
+        long from = (long) page * moviesPerPage;
+        long to = from + moviesPerPage;
+        if (to > current.length && !(complete && from <= current.length)) {
+            return null;
+        }
+        return List.of(Arrays.copyOfRange(current, (int) from, (int) Math.min(to, current.length)));
+    }
+
+    public int size() {
+        return ranked.length;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(
+            initialDelayString = "${movies.leaderboard.rebuild-interval:PT5M}",
+            fixedDelayString = "${movies.leaderboard.rebuild-interval:PT5M}"
+    )
+    public void rebuild() {
+        lock.lock();
+        try {
+            // Lock is held during the query, so changes committed meanwhile are applied after it
+            List<Movie> top = moviesRepository.findAllByOrderByAverageRatingDescIdDesc(Limit.of(capacity + 1), Movie.class);
+            complete = top.size() <= capacity;
+            ranked = top.stream()
+                    .limit(capacity)
+                    .map(Movie::new)
+                    .toArray(Movie[]::new);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void movieChanged(Movie movie) {
+        lock.lock();
+        try {
+            // After-commit callbacks of concurrent transactions may come in any order, an older snapshot is dropped
+            Movie held = find(ranked, movie.getId());
+            if (held != null && movie.getVersion() <= held.getVersion()) {
+                return;
+            }
+            Movie[] current = without(ranked, movie.getId());
+            Movie snapshot = new Movie(movie);
+
+            int position = Arrays.binarySearch(current, snapshot, ORDER);
+            int insertAt = position >= 0 ? position : -position - 1;
+            if (insertAt == current.length && !complete) {
+                // Ranks below the tail, some movie that is not on the board may be ahead of it
+                ranked = current;
+                return;
+            }
+
+            Movie[] updated = new Movie[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, insertAt);
+            updated[insertAt] = snapshot;
+            System.arraycopy(current, insertAt, updated, insertAt + 1, current.length - insertAt);
+            if (updated.length > capacity) {
+                updated = Arrays.copyOf(updated, capacity);
+                complete = false;
+            }
+            ranked = updated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void movieDeleted(int id) {
+        lock.lock();
+        try {
+            ranked = without(ranked, id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Movie find(Movie[] movies, int id) {
+        for (Movie movie : movies) {
+            if (movie.getId() == id) {
+                return movie;
+            }
+        }
+        return null;
+    }
+
+    private static Movie[] without(Movie[] movies, int id) {
+        for (int i = 0; i < movies.length; i++) {
+            if (movies[i].getId() == id) {
+                Movie[] result = new Movie[movies.length - 1];
+                System.arraycopy(movies, 0, result, 0, i);
+                System.arraycopy(movies, i + 1, result, i, movies.length - i - 1);
+                return result;
+            }
+        }
+        return movies;
+    }
+}
@@ -0,0 +1,404 @@
+package ru.walkername.movie_catalog.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.walkername.movie_catalog.models.Movie;
+import ru.walkername.movie_catalog.repositories.MoviesRepository;
+import ru.walkername.movie_catalog.util.BkTree;
+import ru.walkername.movie_catalog.util.IntObjectMap;
+import ru.walkername.movie_catalog.util.TextFolding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Embedded full-text index over movie titles and descriptions.
+ * <br>Every word maps to a posting list of movie ids (sorted int arrays with term frequencies).
+ * Results are ranked by BM25, title words count twice. Query words also match
+ * indexed words within edit distance 1 (5-8 letters) or 2 (longer words) with a lower weight,
+ * such words are found through a BK-tree, so the cost depends on the number of close words, not on the vocabulary.
+ */
+@Component
+public class MovieSearchIndex implements MovieChangeListener {
+
+    private static final double K1 = 1.2;
+
+    private static final double B = 0.75;
+
+    private static final int TITLE_WEIGHT = 2;
+
+    // Score of a match is multiplied by this for every edit
+    private static final double FUZZY_PENALTY = 0.5;
+
+    // The shortest word a misspelled query word can match: 5 letters with one edit
+    private static final int MIN_FUZZY_LENGTH = 4;
+
+    // Removed words stay in the BK-tree, it is rebuilt once it has this many words more than the index has of its length
+    private static final int MAX_STALE_FUZZY_TERMS = 1024;
+
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private final MoviesRepository moviesRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private IndexState state = new IndexState();
+
+    // Changes received during rebuild, guarded by lock; null when rebuild is not running
+    private List<Change> changesDuringRebuild;
+
+    @Autowired
+    public MovieSearchIndex(MoviesRepository moviesRepository) {
+        this.moviesRepository = moviesRepository;
+    }
+
+    /**
+     * Method to search movies by words of title and description
+     * @param query words to search, misspelled words are matched too
+     * @param page number of page
+     * @param limit number of results on the page
+     * @return ids of the page of results, best first, and total number of matched movies
+     */
+    public SearchResult search(String query, int page, int limit) {
+        Set<String> words = new LinkedHashSet<>(TextFolding.tokens(query));
+        if (words.isEmpty()) {
+            return new SearchResult(List.of(), 0);
+        }
+
+        lock.readLock().lock();
+        try {
+            IndexState current = state;
+            if (current.documents.isEmpty()) {
+                return new SearchResult(List.of(), 0);
+            }
+            double averageLength = (double) current.totalLength / current.documents.size();
+
+            IntObjectMap<double[]> scores = new IntObjectMap<>();
+            List<Integer> matched = new ArrayList<>();
+            for (String word : words) {
+                // The best match of every query word counts once per movie
+                IntObjectMap<double[]> wordScores = new IntObjectMap<>();
+                List<Integer> wordMatched = new ArrayList<>();
+                if (current.postings.containsKey(word)) {
+                    current.score(word, 1, averageLength, wordScores, wordMatched);
+                }
+                int maxEdits = maxEdits(word);
+                if (maxEdits > 0) {
+                    current.fuzzyTerms.search(word, maxEdits, (term, edits) -> {
+                        if (edits > 0 && current.postings.containsKey(term)) {
+                            current.score(term, Math.pow(FUZZY_PENALTY, edits), averageLength, wordScores, wordMatched);
+                        }
+                    });
+                }
+                for (int id : wordMatched) {
+                    double[] score = scores.get(id);
+                    if (score == null) {
+                        score = new double[1];
+                        scores.put(id, score);
+                        matched.add(id);
+                    }
+                    score[0] += wordScores.get(id)[0];
+                }
+            }
+
+            matched.sort((a, b) -> {
+                int byScore = Double.compare(scores.get(b)[0], scores.get(a)[0]);
+                return byScore != 0 ? byScore : Integer.compare(a, b);
+            });
+            long from = Math.min((long) page * limit, matched.size());
+            long to = Math.min(from + limit, matched.size());
+            return new SearchResult(new ArrayList<>(matched.subList((int) from, (int) to)), matched.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Method to load the index from DB. Movies are read in batches by id,
+     * and searches are served from the previous index until loading is finished.
+     * Runs periodically too, which also drops removed words from the BK-tree.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(
+            initialDelayString = "${movies.search-index.rebuild-interval:PT5M}",
+            fixedDelayString = "${movies.search-index.rebuild-interval:PT5M}"
+    )
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        IndexState loaded = new IndexState();
+        try {
+            int lastId = 0;
+            List<Movie> batch;
+            do {
+                batch = moviesRepository.findAllByIdGreaterThanOrderByIdAsc(lastId, Limit.of(REBUILD_BATCH_SIZE));
+                for (Movie movie : batch) {
+                    loaded.add(movie);
+                    lastId = movie.getId();
+                }
+            } while (batch.size() == REBUILD_BATCH_SIZE);
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            // Changes committed while loading may be missing in the loaded batches
+            for (Change change : changesDuringRebuild) {
+                change.applyTo(loaded);
+            }
+            changesDuringRebuild = null;
+            state = loaded;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void movieChanged(Movie movie) {
+        apply(new Change(movie.getId(), new Movie(movie)));
+    }
+
+    @Override
+    public void movieDeleted(int id) {
+        apply(new Change(id, null));
+    }
+
+    private void apply(Change change) {
+        lock.writeLock().lock();
+        try {
+            change.applyTo(state);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static int maxEdits(String word) {
+        if (word.length() <= 4) {
+            return 0;
+        }
+        return word.length() <= 8 ? 1 : 2;
+    }
+
+    public static class SearchResult {
+
+        private final List<Integer> ids;
+
+        private final int total;
+
+        public SearchResult(List<Integer> ids, int total) {
+            this.ids = ids;
+            this.total = total;
+        }
+
+        public List<Integer> getIds() {
+            return ids;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+    }
+
+    private static class Change {
+
+        private final int id;
+
+        // null if the movie was deleted
+        private final Movie movie;
+
+        private Change(int id, Movie movie) {
+            this.id = id;
+            this.movie = movie;
+        }
+
+        private void applyTo(IndexState state) {
+            if (movie == null) {
+                state.remove(id);
+                return;
+            }
+            // After-commit callbacks of concurrent transactions may come in any order,
+            // and a rebuild may have loaded a newer row than a change received meanwhile
+            Document held = state.documents.get(id);
+            if (held == null || movie.getVersion() > held.version) {
+                state.add(movie);
+            }
+        }
+    }
+
+    private static class IndexState {
+
+        private final Map<String, Postings> postings = new HashMap<>();
+
+        // Indexed words of MIN_FUZZY_LENGTH letters or more, and words removed since the tree was built
+        private BkTree fuzzyTerms = new BkTree();
+
+        // Number of indexed words of MIN_FUZZY_LENGTH letters or more, the size of the tree without stale words
+        private int fuzzyEligibleTerms;
+
+        private final IntObjectMap<Document> documents = new IntObjectMap<>();
+
+        private long totalLength;
+
+        private void add(Movie movie) {
+            remove(movie.getId());
+
+            Map<String, Integer> frequencies = new HashMap<>();
+            int length = 0;
+            for (String token : TextFolding.tokens(movie.getTitle())) {
+                frequencies.merge(token, TITLE_WEIGHT, Integer::sum);
+                length += TITLE_WEIGHT;
+            }
+            for (String token : TextFolding.tokens(movie.getDescription())) {
+                frequencies.merge(token, 1, Integer::sum);
+                length++;
+            }
+            if (frequencies.isEmpty()) {
+                return;
+            }
+
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), term -> {
+                    if (term.length() >= MIN_FUZZY_LENGTH) {
+                        fuzzyTerms.add(term);
+                        fuzzyEligibleTerms++;
+                    }
+                    return new Postings();
+                }).put(movie.getId(), entry.getValue());
+            }
+            documents.put(movie.getId(), new Document(frequencies.keySet().toArray(new String[0]), length, movie.getVersion()));
+            totalLength += length;
+        }
+
+        private void remove(int id) {
+            Document document = documents.remove(id);
+            if (document == null) {
+                return;
+            }
+            for (String term : document.terms) {
+                Postings termPostings = postings.get(term);
+                termPostings.remove(id);
+                if (termPostings.size == 0) {
+                    postings.remove(term);
+                    if (term.length() >= MIN_FUZZY_LENGTH) {
+                        fuzzyEligibleTerms--;
+                    }
+                }
+            }
+            totalLength -= document.length;
+            if (fuzzyTerms.size() > fuzzyEligibleTerms + MAX_STALE_FUZZY_TERMS) {
+                fuzzyTerms = new BkTree();
+                for (String term : postings.keySet()) {
+                    if (term.length() >= MIN_FUZZY_LENGTH) {
+                        fuzzyTerms.add(term);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Adds BM25 score of the term to every movie that contains it, keeping the maximum per movie
+         */
+        private void score(String term, double weight, double averageLength,
+                           IntObjectMap<double[]> scores, List<Integer> matched) {
+            Postings termPostings = postings.get(term);
+            int count = documents.size();
+            double idf = Math.log(1 + (count - termPostings.size + 0.5) / (termPostings.size + 0.5));
+            for (int i = 0; i < termPostings.size; i++) {
+                int id = termPostings.ids[i];
+                int frequency = termPostings.frequencies[i];
+                double length = documents.get(id).length;
+                double score = weight * idf * frequency * (K1 + 1)
+                        / (frequency + K1 * (1 - B + B * length / averageLength));
+
+                double[] best = scores.get(id);
+                if (best == null) {
+                    scores.put(id, new double[]{score});
+                    matched.add(id);
+                } else if (score > best[0]) {
+                    best[0] = score;
+                }
+            }
+        }
+    }
+
+    private static class Document {
+
+        private final String[] terms;
+
+        private final int length;
+
+        private final long version;
+
+        private Document(String[] terms, int length, long version) {
+            this.terms = terms;
+            this.length = length;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Movie ids in ascending order with term frequencies
+     */
+    private static class Postings {
+
+        private int[] ids = new int[2];
+
+        private int[] frequencies = new int[2];
+
+        private int size;
+
+        private void put(int id, int frequency) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                frequencies[index] = frequency;
+                return;
+            }
+            index = -index - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            System.arraycopy(frequencies, index, frequencies, index + 1, size - index);
+            ids[index] = id;
+            frequencies[index] = frequency;
+            size++;
+        }
+
+        private void remove(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            System.arraycopy(frequencies, index + 1, frequencies, index, size - index - 1);
+            size--;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package ru.walkername.movie_catalog.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.walkername.movie_catalog.models.Movie;
+import ru.walkername.movie_catalog.repositories.MoviesRepository;
+import ru.walkername.movie_catalog.util.IntObjectMap;
+import ru.walkername.movie_catalog.util.TextFolding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Prefix index over folded movie titles for search autocomplete.
+ * Titles are kept in a sorted array, so all titles with a prefix form one contiguous range.
+ * Matches are ranked by average rating, which is updated in place on rating changes.
+ * <br>The range of a one or two letter prefix is a large part of the catalog, so the best matches of such prefixes
+ * are kept in small ranked lists, built on the first search and then maintained like MovieLeaderboard:
+ * a list is always an exact prefix of the ranking, and when a movie drops below its tail it gets shorter
+ * until a search needs more matches than it holds and it is built again.
+ */
+@Component
+public class MovieTitleIndex implements MovieChangeListener {
+
+    private static final Comparator<Entry> RANK = Comparator
+            .comparingDouble((Entry entry) -> entry.averageRating)
+            .thenComparingInt(entry -> entry.id);
+
+    private static final Comparator<Entry> BEST_FIRST = RANK.reversed();
+
+    // Prefixes up to this length are served from ranked lists
+    private static final int SHORT_PREFIX_LENGTH = 2;
+
+    // Size of a ranked list, the largest limit of the search endpoint
+    private static final int TOP_PER_PREFIX = 50;
+
+    private static final Comparator<Entry> BY_TITLE = Comparator
+            .comparing((Entry entry) -> entry.title)
+            .thenComparingInt(entry -> entry.id);
+
+    private final MoviesRepository moviesRepository;
+
+    // Held during the reload query, so it is a ReentrantLock rather than a monitor
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Sorted by BY_TITLE, replaced as a whole when titles change
+    private volatile Entry[] entries = new Entry[0];
+
+    // Guarded by lock
+    private final IntObjectMap<Entry> entriesById = new IntObjectMap<>();
+
+    // Best matches of short prefixes, written under lock, a list is replaced as a whole on every change
+    private final Map<String, Top> topByPrefix = new ConcurrentHashMap<>();
+
+    @Autowired
+    public MovieTitleIndex(MoviesRepository moviesRepository) {
+        this.moviesRepository = moviesRepository;
+    }
+
+    /**
+     * Method to find movies which title starts with prefix, ignoring case and diacritics
+     * @param prefix beginning of the title
+     * @param limit maximum number of results
+     * @return ids of the best rated matches, best first
+     */
+    public List<Integer> search(String prefix, int limit) {
+        String folded = TextFolding.fold(prefix);
+        Entry[] current = entries;
+        if (folded.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        Entry[] best;
+        if (folded.length() <= SHORT_PREFIX_LENGTH && limit <= TOP_PER_PREFIX) {
+            best = topOf(folded, limit).entries;
+        } else {
+            best = best(current, folded, limit);
+        }
+
+        List<Integer> ids = new ArrayList<>(Math.min(limit, best.length));
+        for (int i = 0; i < best.length && i < limit; i++) {
+            ids.add(best[i].id);
+        }
+        return ids;
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(
+            initialDelayString = "${movies.title-index.rebuild-interval:PT30M}",
+            fixedDelayString = "${movies.title-index.rebuild-interval:PT30M}"
+    )
+    public void rebuild() {
+        lock.lock();
+        try {
+            List<Object[]> rows = moviesRepository.findAllTitlesAndRatings();
+            List<Entry> loaded = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                loaded.add(new Entry((Integer) row[0], TextFolding.fold((String) row[1]), (Double) row[2], (Long) row[3]));
+            }
+            Entry[] sorted = loaded.toArray(new Entry[0]);
+            Arrays.sort(sorted, BY_TITLE);
+
+            entriesById.clear();
+            for (Entry entry : sorted) {
+                entriesById.put(entry.id, entry);
+            }
+            entries = sorted;
+            topByPrefix.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void movieChanged(Movie movie) {
+        lock.lock();
+        try {
+            String folded = TextFolding.fold(movie.getTitle());
+            Entry existing = entriesById.get(movie.getId());
+            // After-commit callbacks of concurrent transactions may come in any order, an older snapshot is dropped
+            if (existing != null && movie.getVersion() <= existing.version) {
+                return;
+            }
+            if (existing != null) {
+                removeFromTops(existing);
+            }
+            if (existing != null && existing.title.equals(folded)) {
+                existing.averageRating = movie.getAverageRating();
+                existing.version = movie.getVersion();
+                addToTops(existing);
+                return;
+            }
+
+            Entry[] current = existing != null ? without(entries, existing) : entries;
+            Entry entry = new Entry(movie.getId(), folded, movie.getAverageRating(), movie.getVersion());
+            int insertAt = -Arrays.binarySearch(current, entry, BY_TITLE) - 1;
+            Entry[] updated = new Entry[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, insertAt);
+            updated[insertAt] = entry;
+            System.arraycopy(current, insertAt, updated, insertAt + 1, current.length - insertAt);
+
+            entriesById.put(entry.id, entry);
+            entries = updated;
+            addToTops(entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void movieDeleted(int id) {
+        lock.lock();
+        try {
+            Entry existing = entriesById.get(id);
+            if (existing != null) {
+                removeFromTops(existing);
+                entries = without(entries, existing);
+                entriesById.remove(id);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return ranked list of the prefix that holds at least limit matches or all of them
+     */
+    private Top topOf(String prefix, int limit) {
+        Top top = topByPrefix.get(prefix);
+        if (top != null && (top.complete || top.entries.length >= limit)) {
+            return top;
+        }
+        lock.lock();
+        try {
+            top = topByPrefix.get(prefix);
+            if (top == null || !(top.complete || top.entries.length >= limit)) {
+                // One more than fits tells if the list holds every match
+                Entry[] best = best(entries, prefix, TOP_PER_PREFIX + 1);
+                top = best.length > TOP_PER_PREFIX
+                        ? new Top(Arrays.copyOf(best, TOP_PER_PREFIX), false)
+                        : new Top(best, true);
+                topByPrefix.put(prefix, top);
+            }
+            return top;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Must be called under lock, before the rating or title of the entry changes
+     */
+    private void removeFromTops(Entry entry) {
+        for (int length = 1; length <= Math.min(SHORT_PREFIX_LENGTH, entry.title.length()); length++) {
+            String prefix = entry.title.substring(0, length);
+            Top top = topByPrefix.get(prefix);
+            if (top == null) {
+                continue;
+            }
+            for (int i = 0; i < top.entries.length; i++) {
+                if (top.entries[i].id == entry.id) {
+                    Entry[] rest = new Entry[top.entries.length - 1];
+                    System.arraycopy(top.entries, 0, rest, 0, i);
+                    System.arraycopy(top.entries, i + 1, rest, i, rest.length - i);
+                    topByPrefix.put(prefix, new Top(rest, top.complete));
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Must be called under lock, after the rating or title of the entry changed
+     */
+    private void addToTops(Entry entry) {
+        for (int length = 1; length <= Math.min(SHORT_PREFIX_LENGTH, entry.title.length()); length++) {
+            String prefix = entry.title.substring(0, length);
+            Top top = topByPrefix.get(prefix);
+            if (top == null) {
+                continue;
+            }
+            int position = Arrays.binarySearch(top.entries, entry, BEST_FIRST);
+            int insertAt = position >= 0 ? position : -position - 1;
+            if (insertAt == top.entries.length && !top.complete) {
+                // Ranks below the tail, some match that is not in the list may be ahead of it
+                continue;
+            }
+            Entry[] updated = new Entry[top.entries.length + 1];
+            System.arraycopy(top.entries, 0, updated, 0, insertAt);
+            updated[insertAt] = entry;
+            System.arraycopy(top.entries, insertAt, updated, insertAt + 1, top.entries.length - insertAt);
+            topByPrefix.put(prefix, updated.length > TOP_PER_PREFIX
+                    ? new Top(Arrays.copyOf(updated, TOP_PER_PREFIX), false)
+                    : new Top(updated, top.complete));
+        }
+    }
+
+    /**
+     * @return at most limit entries which title starts with the prefix, best first
+     */
+    private static Entry[] best(Entry[] entries, String prefix, int limit) {
+        // Min-heap of the best matches seen so far, its head is the worst of them
+        PriorityQueue<Entry> best = new PriorityQueue<>(limit + 1, RANK);
+        for (int i = lowerBound(entries, prefix); i < entries.length && entries[i].title.startsWith(prefix); i++) {
+            Entry entry = entries[i];
+            if (best.size() < limit) {
+                best.add(entry);
+            } else if (RANK.compare(entry, best.peek()) > 0) {
+                best.poll();
+                best.add(entry);
+            }
+        }
+
+        Entry[] result = new Entry[best.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = best.poll();
+        }
+        return result;
+    }
+
+    private static int lowerBound(Entry[] entries, String title) {
+        int low = 0;
+        int high = entries.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entries[mid].title.compareTo(title) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static Entry[] without(Entry[] entries, Entry entry) {
+        int index = Arrays.binarySearch(entries, entry, BY_TITLE);
+        if (index < 0) {
+            return entries;
+        }
+        Entry[] result = new Entry[entries.length - 1];
+        System.arraycopy(entries, 0, result, 0, index);
+        System.arraycopy(entries, index + 1, result, index, entries.length - index - 1);
+        return result;
+    }
+
+    private static class Top {
+
+        // Sorted by BEST_FIRST
+        private final Entry[] entries;
+
+        // Whether the list holds every title with the prefix
+        private final boolean complete;
+
+        private Top(Entry[] entries, boolean complete) {
+            this.entries = entries;
+            this.complete = complete;
+        }
+    }
+
+    private static class Entry {
+
+        private final int id;
+
+        private final String title;
+
+        private volatile double averageRating;
+
+        // Guarded by lock
+        private long version;
+
+        private Entry(int id, String title, double averageRating, long version) {
+            this.id = id;
+            this.title = title;
+            this.averageRating = averageRating;
+            this.version = version;
+        }
+    }
+}
@@ -1,67 +1,150 @@
 package ru.walkername.movie_catalog.services;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.observation.annotation.Observed;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.walkername.movie_catalog.dto.MovieDTO;
 import ru.walkername.movie_catalog.dto.MovieDetails;
+import ru.walkername.movie_catalog.dto.MovieSearchResponse;
+import ru.walkername.movie_catalog.dto.MovieSummary;
+import ru.walkername.movie_catalog.dto.MoviesPageResponse;
 import ru.walkername.movie_catalog.dto.NewRatingDTO;
+import ru.walkername.movie_catalog.dto.RatingDelta;
 import ru.walkername.movie_catalog.dto.RatingsResponse;
 import ru.walkername.movie_catalog.models.Movie;
 import ru.walkername.movie_catalog.models.Rating;
+import ru.walkername.movie_catalog.repositories.MovieSummaryRow;
+import ru.walkername.movie_catalog.repositories.MoviesJdbcRepository;
 import ru.walkername.movie_catalog.repositories.MoviesRepository;
+import ru.walkername.movie_catalog.util.IntObjectMap;
+import ru.walkername.movie_catalog.util.MovieCursor;
+import ru.walkername.movie_catalog.util.MovieDetailsHydrator;
+import ru.walkername.movie_catalog.util.MovieSort;
+import ru.walkername.movie_catalog.util.SingleFlight;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.function.ToIntFunction;
 
 @Service
 @Transactional(readOnly = true)
+@Observed(name = "movies.service")
 public class MoviesService {
 
     private final MoviesRepository moviesRepository;
 
-    private final String RATING_SERVICE_API;
+    private final RatingPageCache ratingPageCache;
 
-    private final RestTemplate restTemplate;
+    private final MovieCache movieCache;
+
+    private final MoviesJdbcRepository moviesJdbcRepository;
+
+    private final MovieLeaderboard movieLeaderboard;
+
+    private final MovieTitleIndex movieTitleIndex;
+
+    private final MovieSearchIndex movieSearchIndex;
+
+    private final MovieCounter movieCounter;
+
+    private final CatalogRating catalogRating;
+
+    private final List<MovieChangeListener> changeListeners;
+
+    private final SingleFlight<String, List<MovieDetails>> userPages = new SingleFlight<>();
 
     @Autowired
     public MoviesService(
             MoviesRepository moviesRepository,
-            @Value("${rating.service.url}") String RATING_SERVICE_API,
-            RestTemplate restTemplate) {
+            RatingPageCache ratingPageCache,
+            MovieCache movieCache,
+            MoviesJdbcRepository moviesJdbcRepository,
+            MovieLeaderboard movieLeaderboard,
+            MovieTitleIndex movieTitleIndex,
+            MovieSearchIndex movieSearchIndex,
+            MovieCounter movieCounter,
+            CatalogRating catalogRating,
+            List<MovieChangeListener> changeListeners) {
         this.moviesRepository = moviesRepository;
-        this.RATING_SERVICE_API = RATING_SERVICE_API;
-        this.restTemplate = restTemplate;
+        this.ratingPageCache = ratingPageCache;
+        this.movieCache = movieCache;
+        this.moviesJdbcRepository = moviesJdbcRepository;
+        this.movieLeaderboard = movieLeaderboard;
+        this.movieTitleIndex = movieTitleIndex;
+        this.movieSearchIndex = movieSearchIndex;
+        this.movieCounter = movieCounter;
+        this.catalogRating = catalogRating;
+        this.changeListeners = changeListeners;
     }
 
     @Transactional
     public void save(Movie movie) {
-        moviesRepository.save(movie);
+        boolean inserted = movie.getId() == 0;
+        if (inserted) {
+            movie.setRankScore(catalogRating.rankScore(movie.getRatingSum(), movie.getScores()));
+        }
+        Movie saved = moviesRepository.save(movie);
+        changedAfterCommit(saved);
+        if (inserted) {
+            afterCommit(() -> movieCounter.add(1));
+        }
     }
 
+    /**
+     * Method to get movie by id through the movie cache
+     * @param id indicates the movie
+     * @return copy of the movie or null if there is no such movie
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Movie findOne(int id) {
-        Optional<Movie> movie = moviesRepository.findById(id);
-        return movie.orElse(null);
+        return movieCache.get(id, movieId -> moviesRepository.findById(movieId).orElse(null));
+    }
+
+    /**
+     * Method to apply edit of a movie, ratings of the movie are kept as they are in DB
+     */
+    @Transactional
+    public void edit(int id, MovieDTO movieDTO) {
+        int updated = moviesRepository.updateDetails(
+                id,
+                movieDTO.getTitle(),
+                movieDTO.getReleaseYear(),
+                movieDTO.getDescription()
+        );
+        if (updated > 0) {
+            moviesRepository.findById(id).ifPresent(this::changedAfterCommit);
+        }
     }
 
     @Transactional
     public void update(int id, Movie updatedMovie) {
         updatedMovie.setId(id);
-        moviesRepository.save(updatedMovie);
+        Movie saved = moviesRepository.save(updatedMovie);
+        changedAfterCommit(saved);
     }
 
     @Transactional
     public void delete(int id) {
-        moviesRepository.deleteById(id);
+        if (moviesRepository.deleteMovieById(id) > 0) {
+            deletedAfterCommit(id);
+            afterCommit(() -> movieCounter.add(-1));
+        }
     }
 
     /**
-     * Method to update field of average rating of specific movie
+     * Method to update field of average rating of specific movie.
+     * Rating is applied as an atomic increment of the stored sum and number of ratings,
+     * so concurrent ratings of the same movie are never lost.
      * @param id indicates the movie that will be updated
      * @param ratingDTO new rating to update average rating
      *                  <br><b>Structure:</b>
@@ -71,37 +154,47 @@ public class MoviesService {
      */
     @Transactional
     public void updateAverageRating(int id, NewRatingDTO ratingDTO) {
-        Optional<Movie> movie = moviesRepository.findById(id);
-        movie.ifPresent(value -> {
-            double newRating = ratingDTO.getRating();
-            double oldRating = ratingDTO.getOldRating();
-            boolean isUpdate = ratingDTO.isUpdate();
-
-            int scores = value.getScores();
-            double averageRating = value.getAverageRating();
-            double newAverageRating;
-
-            if (!isUpdate) {
-                newAverageRating = (averageRating * scores + newRating) / (scores + 1);
-                value.setScores(scores + 1);
-            } else {
-                newAverageRating = (averageRating * scores - oldRating + newRating) / scores;
-            }
+        if (ratingDTO.getUserId() != null) {
+            // Rating service has already stored the rating, so the user's cached pages are outdated;
+            // they are dropped after commit, keeping the transaction short
+            int userId = ratingDTO.getUserId();
+            afterCommit(() -> ratingPageCache.invalidateUsers(List.of(userId)));
+        }
+        RatingDelta delta = RatingDelta.of(id, ratingDTO);
+        int[] updated = moviesJdbcRepository.addRatings(
+                List.of(delta), catalogRating.getPriorSum(), catalogRating.getPriorWeight()
+        );
+        if (updated[0] > 0) {
+            moviesRepository.findById(id).ifPresent(this::changedAfterCommit);
+        }
+    }
 
-            value.setAverageRating(newAverageRating);
-        });
+    /**
+     * Method to apply merged rating changes of many movies in one transaction
+     * @param deltas net rating changes, at most one per movie
+     */
+    @Transactional
+    public void applyRatingDeltas(List<RatingDelta> deltas) {
+        moviesJdbcRepository.addRatings(deltas, catalogRating.getPriorSum(), catalogRating.getPriorWeight());
+        List<Integer> ids = new ArrayList<>(deltas.size());
+        for (RatingDelta delta : deltas) {
+            ids.add(delta.getMovieId());
+        }
+        for (Movie movie : moviesRepository.findAllById(ids)) {
+            changedAfterCommit(movie);
+        }
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS)
     public long getMoviesNumber() {
-        return moviesRepository.count();
+        return movieCounter.get();
     }
 
     /**
-     * Method to get all movies from DB
-     * @return list of movies
+     * Method to get number of movies estimated by DB planner, for very large catalogs
      */
-    public List<Movie> getAllMovies() {
-        return moviesRepository.findAll();
+    public long getMoviesNumberEstimate() {
+        return movieCounter.estimate();
     }
 
     /**
@@ -111,60 +204,253 @@ public class MoviesService {
      * @param moviesPerPage number of movies that will be in the list
      *                      (all movies are split by this number, you give only part by page number)
      * @param down default 'true' -> descending rating order; 'false' -> ascending.
+     * @param sort RATING -> by average rating; RANK -> by rank score, which doesn't let a few votes win
      * @return list of movies
      */
-    public List<Movie> getAllMoviesWithPagination(int page, int moviesPerPage, boolean down) {
-        Sort sort = down
-                ? Sort.by("averageRating").descending()
-                : Sort.by("averageRating").ascending();
-        return moviesRepository.findAll(PageRequest.of(page, moviesPerPage, sort)).getContent();
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<Movie> getAllMoviesWithPagination(int page, int moviesPerPage, boolean down, MovieSort sort) {
+        if (down && sort == MovieSort.RATING) {
+            // First pages of the descending listing are served from memory
+            List<Movie> top = movieLeaderboard.getPage(page, moviesPerPage);
+            if (top != null) {
+                return top;
+            }
+        }
+        return moviesRepository.findAll(pageBy(sort, page, moviesPerPage, down)).getContent();
+    }
+
+    /**
+     * Same as getAllMoviesWithPagination, but without descriptions:
+     * only the columns of MovieSummary are selected
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<MovieSummary> getMovieSummariesWithPagination(int page, int moviesPerPage, boolean down, MovieSort sort) {
+        if (down && sort == MovieSort.RATING) {
+            List<Movie> top = movieLeaderboard.getPage(page, moviesPerPage);
+            if (top != null) {
+                return toSummaries(top);
+            }
+        }
+        return moviesRepository.findAllSummaries(pageBy(sort, page, moviesPerPage, down));
+    }
+
+    private static PageRequest pageBy(MovieSort sort, int page, int moviesPerPage, boolean down) {
+        // id breaks ties of the sorted column, so page contents are stable and the (column, id) index is used
+        Sort order = down
+                ? Sort.by(sort.getProperty()).descending().and(Sort.by("id").descending())
+                : Sort.by(sort.getProperty()).ascending().and(Sort.by("id").ascending());
+        return PageRequest.of(page, moviesPerPage, order);
     }
 
     /**
-     * Method to get movies from DB, which was rated by specific user
+     * Method to get movies from DB with keyset pagination.
+     * Unlike page numbers, cost of a page doesn't depend on how deep it is.
+     * @param cursor continuation token from the previous page, null or empty for the first page
+     * @param moviesPerPage number of movies that will be in the list
+     * @param down default 'true' -> descending rating order; 'false' -> ascending.
+     *             Ignored when cursor is given, the cursor keeps the order of the first page.
+     * @return movie summaries and continuation token of the next page (null if this page is the last one)
+     */
+    public MoviesPageResponse<MovieSummary> getMoviesAfterCursor(String cursor, int moviesPerPage, boolean down) {
+        List<MovieSummary> movies;
+        if (cursor == null || cursor.isEmpty()) {
+            movies = down
+                    ? moviesRepository.findAllByOrderByAverageRatingDescIdDesc(Limit.of(moviesPerPage), MovieSummary.class)
+                    : moviesRepository.findAllByOrderByAverageRatingAscIdAsc(Limit.of(moviesPerPage), MovieSummary.class);
+        } else {
+            MovieCursor after = MovieCursor.decode(cursor);
+            down = after.isDown();
+            List<MovieSummaryRow> rows = down
+                    ? moviesRepository.findPageAfterDescending(after.getAverageRating(), after.getId(), moviesPerPage)
+                    : moviesRepository.findPageAfterAscending(after.getAverageRating(), after.getId(), moviesPerPage);
+            movies = new ArrayList<>(rows.size());
+            for (MovieSummaryRow row : rows) {
+                movies.add(new MovieSummary(
+                        row.getId(), row.getTitle(), row.getReleaseYear(), row.getAverageRating(), row.getScores()
+                ));
+            }
+        }
+
+        String nextCursor = null;
+        if (movies.size() == moviesPerPage) {
+            MovieSummary last = movies.get(movies.size() - 1);
+            nextCursor = new MovieCursor(down, last.getAverageRating(), last.getId()).encode();
+        }
+        return new MoviesPageResponse<>(movies, nextCursor);
+    }
+
+    /**
+     * Method to get movies from DB, which was rated by specific user.
+     * Concurrent identical requests share one call to rating service and one hydration.
+     * No transaction is held during the call, so slow rating service doesn't keep DB connections.
      *
      * @param id indicates the user ID whose rated movies you want to get
-     * @return list of movies with details of rating
+     * @return list of movies with details of rating, shared between coalesced requests
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<MovieDetails> getMoviesByUser(int id, int page, int moviesPerPage, boolean byDate) {
-        String url = RATING_SERVICE_API + "/ratings/user/" + id + "?page=" + page + "&limit=" + moviesPerPage + "&byDate=" + byDate;
+        String key = id + ":" + page + ":" + moviesPerPage + ":" + byDate;
+        return userPages.execute(key, () -> loadMoviesByUser(id, page, moviesPerPage, byDate));
+    }
 
-        // Getting Rating list by user_id
-        RatingsResponse ratingsResponse = restTemplate.getForObject(url, RatingsResponse.class);
+    private List<MovieDetails> loadMoviesByUser(int id, int page, int moviesPerPage, boolean byDate) {
+        // Getting Rating list by user_id, from the local replica when possible
+        RatingsResponse ratingsResponse = ratingPageCache.getRatingsByUser(id, page, moviesPerPage, byDate);
         if (ratingsResponse == null) {
-            return new ArrayList<>();
+            return Collections.emptyList();
         }
         List<Rating> ratings = ratingsResponse.getRatings();
-
-        // Building list with movieIds from Rating list
-        List<Integer> movieIds = new ArrayList<>();
-        for (Rating rating : ratings) {
-            movieIds.add(rating.getMovieId());
+        if (ratings == null || ratings.isEmpty()) {
+            return Collections.emptyList();
         }
 
-        // Getting Movie list by movieIds list
-        List<Movie> ratedMovies = moviesRepository.findAllById(movieIds);
-
-        // Building list with movie details: title, release year, rating from user, etc.
-        List<MovieDetails> movieDetailsList = new ArrayList<>();
-        // TODO: maybe improve algorithm, because this will be very slow with big amount of data
-        for (Rating rating : ratings) {
-            for (Movie movie : ratedMovies) {
-                if (rating.getMovieId() == movie.getId()) {
-                    MovieDetails movieDetails = new MovieDetails(movie, rating);
-                    movieDetailsList.add(movieDetails);
-                }
+        // Cached movies first, only the rest is loaded from DB
+        List<Integer> movieIds = MovieDetailsHydrator.distinctMovieIds(ratings);
+        Map<Integer, Movie> cached = movieCache.getAllPresent(movieIds);
+        List<MovieSummary> ratedMovies = new ArrayList<>(movieIds.size());
+        List<Integer> missing = new ArrayList<>(movieIds.size() - cached.size());
+        for (Integer movieId : movieIds) {
+            Movie movie = cached.get(movieId);
+            if (movie != null) {
+                ratedMovies.add(new MovieSummary(movie));
+            } else {
+                missing.add(movieId);
             }
         }
+        if (!missing.isEmpty()) {
+            ratedMovies.addAll(moviesRepository.findSummariesByIds(missing));
+        }
 
-        return movieDetailsList;
+        // Building list with movie details: title, release year, rating from user, etc.
+        return MovieDetailsHydrator.hydrate(ratings, ratedMovies);
     }
 
-    public List<Movie> findByTitleStartingWith(String title) {
+    /**
+     * Method to find movies for search autocomplete
+     * @param title beginning of the title, case and diacritics are ignored
+     * @param limit maximum number of movies
+     * @param withDescription 'true' -> whole movies; 'false' -> summaries
+     * @return best rated movies which title starts with the given one, best first
+     */
+    public List<?> findByTitleStartingWith(String title, int limit, boolean withDescription) {
         if (title.isEmpty()) {
             return Collections.emptyList();
         }
-        return moviesRepository.findByTitleStartingWith(title);
+        return findAllInOrder(movieTitleIndex.search(title, limit), withDescription);
+    }
+
+    /**
+     * Method to search movies by words of title and description, tolerating typos
+     * @param query words to search
+     * @param page number of page
+     * @param moviesPerPage number of movies on the page
+     * @param withDescription 'true' -> whole movies; 'false' -> summaries
+     * @return page of the best matching movies and total number of matches
+     */
+    public MovieSearchResponse<?> search(String query, int page, int moviesPerPage, boolean withDescription) {
+        MovieSearchIndex.SearchResult result = movieSearchIndex.search(query, page, moviesPerPage);
+        return new MovieSearchResponse<>(findAllInOrder(result.getIds(), withDescription), result.getTotal());
+    }
+
+    /**
+     * Cached movies first, only the rest is loaded from DB
+     */
+    private List<?> findAllInOrder(List<Integer> ids, boolean withDescription) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Integer, Movie> cached = movieCache.getAllPresent(ids);
+        List<Integer> missing = new ArrayList<>(ids.size() - cached.size());
+        for (Integer id : ids) {
+            if (!cached.containsKey(id)) {
+                missing.add(id);
+            }
+        }
+
+        if (withDescription) {
+            List<Movie> found = new ArrayList<>(ids.size());
+            for (Movie movie : cached.values()) {
+                found.add(new Movie(movie));
+            }
+            if (!missing.isEmpty()) {
+                found.addAll(moviesRepository.findAllById(missing));
+            }
+            return inOrder(ids, found, Movie::getId);
+        }
+        List<MovieSummary> found = new ArrayList<>(ids.size());
+        for (Movie movie : cached.values()) {
+            found.add(new MovieSummary(movie));
+        }
+        if (!missing.isEmpty()) {
+            found.addAll(moviesRepository.findSummariesByIds(missing));
+        }
+        return inOrder(ids, found, MovieSummary::getId);
+    }
+
+    private static <T> List<T> inOrder(List<Integer> ids, List<T> found, ToIntFunction<T> idOf) {
+        IntObjectMap<T> byId = new IntObjectMap<>(found.size());
+        for (T item : found) {
+            byId.put(idOf.applyAsInt(item), item);
+        }
+        List<T> ordered = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            T item = byId.get(id);
+            if (item != null) {
+                ordered.add(item);
+            }
+        }
+        return ordered;
+    }
+
+    private static List<MovieSummary> toSummaries(List<Movie> movies) {
+        List<MovieSummary> summaries = new ArrayList<>(movies.size());
+        for (Movie movie : movies) {
+            summaries.add(new MovieSummary(movie));
+        }
+        return summaries;
+    }
+
+    public CacheStats getCacheStats() {
+        return movieCache.stats();
+    }
+
+    public long getCacheSize() {
+        return movieCache.size();
+    }
+
+    /**
+     * Cached movie is dropped only after commit, otherwise a concurrent reader
+     * could load the old row again before the new one is visible.
+     */
+    private void changedAfterCommit(Movie movie) {
+        afterCommit(() -> {
+            movieCache.invalidate(movie.getId());
+            for (MovieChangeListener listener : changeListeners) {
+                listener.movieChanged(movie);
+            }
+        });
+    }
+
+    private void deletedAfterCommit(int id) {
+        afterCommit(() -> {
+            movieCache.invalidate(id);
+            for (MovieChangeListener listener : changeListeners) {
+                listener.movieDeleted(id);
+            }
+        });
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
     }
 
 }
@@ -0,0 +1,131 @@
+package ru.walkername.movie_catalog.services;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.walkername.movie_catalog.dto.RatingsResponse;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local replica of rating pages of users from rating service.
+ * A page older than refresh-after is still returned, and reloaded in the background (stale-while-revalidate);
+ * if reloading fails, the stale page stays until expire-after. Pages of a user are dropped
+ * when a rating event of the user arrives, found through an index of keys by user instead of a scan.
+ */
+@Component
+public class RatingPageCache {
+
+    private final ExecutorService refreshExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final LoadingCache<PageKey, RatingsResponse> pages;
+
+    // A key is indexed before its page is requested, so an invalidation that starts during the request finds it
+    private final ConcurrentHashMap<Integer, Set<PageKey>> keysByUser = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RatingPageCache(
+            RatingServiceClient ratingServiceClient,
+            @Value("${rating.cache.max-size:10000}") long maxSize,
+            @Value("${rating.cache.refresh-after:PT30S}") Duration refreshAfter,
+            @Value("${rating.cache.expire-after:PT10M}") Duration expireAfter
+    ) {
+        // Reloads block on HTTP, so they don't run in the common pool
+        this.pages = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .refreshAfterWrite(refreshAfter)
+                .expireAfterWrite(expireAfter)
+                .executor(refreshExecutor)
+                .recordStats()
+                // Runs inside the atomic removal of the entry, so it can't race with a load of the same key
+                .evictionListener((PageKey key, RatingsResponse page, RemovalCause cause) -> unindex(key))
+                .build(new CacheLoader<PageKey, RatingsResponse>() {
+                    @Override
+                    public RatingsResponse load(PageKey key) {
+                        index(key);
+                        try {
+                            return ratingServiceClient.getRatingsByUser(key.userId(), key.page(), key.limit(), key.byDate());
+                        } catch (RuntimeException e) {
+                            unindex(key);
+                            throw e;
+                        }
+                    }
+
+                    // The key of a refreshed page is indexed already and stays so if reloading fails
+                    @Override
+                    public RatingsResponse reload(PageKey key, RatingsResponse oldPage) {
+                        return ratingServiceClient.getRatingsByUser(key.userId(), key.page(), key.limit(), key.byDate());
+                    }
+                });
+    }
+
+    /**
+     * Method to get page of ratings of specific user, rating service is called only on a miss
+     * @throws RatingServiceUnavailableException on a miss, if rating service failed
+     */
+    public RatingsResponse getRatingsByUser(int userId, int page, int limit, boolean byDate) {
+        return pages.get(new PageKey(userId, page, limit, byDate));
+    }
+
+    /**
+     * Method to drop all cached pages of the users, costs the number of their pages.
+     * A load of a dropped page that is in flight is waited for and its result dropped too:
+     * Caffeine blocks invalidation of a key while it is being loaded and discards refreshes of invalidated keys.
+     */
+    public void invalidateUsers(Collection<Integer> userIds) {
+        for (Integer userId : userIds) {
+            Set<PageKey> keys = keysByUser.remove(userId);
+            if (keys != null) {
+                pages.invalidateAll(keys);
+            }
+        }
+    }
+
+    public long size() {
+        return pages.estimatedSize();
+    }
+
+    public CacheStats stats() {
+        return pages.stats();
+    }
+
+    // Tests check that the index doesn't outlive the pages; pending evictions are applied first
+    int indexedKeys() {
+        pages.cleanUp();
+        return keysByUser.values().stream().mapToInt(Set::size).sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    private void index(PageKey key) {
+        keysByUser.compute(key.userId(), (userId, keys) -> {
+            Set<PageKey> indexed = keys == null ? ConcurrentHashMap.newKeySet() : keys;
+            indexed.add(key);
+            return indexed;
+        });
+    }
+
+    private void unindex(PageKey key) {
+        keysByUser.computeIfPresent(key.userId(), (userId, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    private record PageKey(int userId, int page, int limit, boolean byDate) {
+    }
+}
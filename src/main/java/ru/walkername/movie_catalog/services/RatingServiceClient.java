@@ -0,0 +1,87 @@
+package ru.walkername.movie_catalog.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import ru.walkername.movie_catalog.dto.RatingsResponse;
+import ru.walkername.movie_catalog.util.CallStats;
+import ru.walkername.movie_catalog.util.CircuitBreaker;
+import ru.walkername.movie_catalog.util.RatingServiceUnavailableException;
+
+import java.time.Duration;
+
+/**
+ * Client of the rating service.
+ * Calls are bounded by the timeouts of the pooled RestTemplate and guarded by a circuit breaker:
+ * when rating service keeps failing, calls fail fast instead of holding request threads.
+ */
+@Component
+public class RatingServiceClient {
+
+    private final RestTemplate restTemplate;
+
+    private final String RATING_SERVICE_API;
+
+    private final CircuitBreaker circuitBreaker;
+
+    private final CallStats callStats = new CallStats();
+
+    @Autowired
+    public RatingServiceClient(
+            @Qualifier("ratingServiceRestTemplate") RestTemplate restTemplate,
+            @Value("${rating.service.url}") String RATING_SERVICE_API,
+            @Value("${rating.service.circuit-breaker.failure-threshold:5}") int failureThreshold,
+            @Value("${rating.service.circuit-breaker.open-duration:PT10S}") Duration openDuration
+    ) {
+        this.restTemplate = restTemplate;
+        this.RATING_SERVICE_API = RATING_SERVICE_API;
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openDuration);
+    }
+
+    /**
+     * Method to get page of ratings of specific user
+     * @throws RatingServiceUnavailableException if rating service failed, timed out or circuit breaker is open
+     */
+    public RatingsResponse getRatingsByUser(int userId, int page, int limit, boolean byDate) {
+        if (!circuitBreaker.tryAcquire()) {
+            callStats.recordRejected();
+            throw new RatingServiceUnavailableException("Rating service is unavailable");
+        }
+
+        // URI template keeps the uri tag of client metrics the same for all users
+        String url = RATING_SERVICE_API + "/ratings/user/{userId}?page={page}&limit={limit}&byDate={byDate}";
+        long start = System.nanoTime();
+        try {
+            RatingsResponse response = restTemplate.getForObject(url, RatingsResponse.class, userId, page, limit, byDate);
+            circuitBreaker.onSuccess();
+            callStats.recordSuccess(System.nanoTime() - start);
+            return response;
+        } catch (HttpClientErrorException e) {
+            // 4xx means rating service is up, the request itself is wrong
+            circuitBreaker.onSuccess();
+            callStats.recordFailure(System.nanoTime() - start);
+            throw e;
+        } catch (RestClientException e) {
+            circuitBreaker.onFailure();
+            callStats.recordFailure(System.nanoTime() - start);
+            throw new RatingServiceUnavailableException("Rating service is unavailable", e);
+        } catch (RuntimeException e) {
+            // Every allowed call must report its outcome, otherwise a half-open breaker waits for its probe forever
+            circuitBreaker.onFailure();
+            callStats.recordFailure(System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    public CircuitBreaker.State getCircuitBreakerState() {
+        return circuitBreaker.getState();
+    }
+
+    public CallStats getCallStats() {
+        return callStats;
+    }
+}
@@ -0,0 +1,224 @@
+package ru.walkername.movie_catalog.services;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.walkername.movie_catalog.dto.RatingDelta;
+import ru.walkername.movie_catalog.dto.RatingEventDTO;
+import ru.walkername.movie_catalog.util.IntObjectMap;
+import ru.walkername.movie_catalog.util.RatingQueueFullException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bounded queue of rating events that are applied in the background.
+ * Events of the same movie are merged into one net change per flush,
+ * and all changes of a flush are written in a few JDBC batches.
+ */
+@Component
+public class RatingUpdateQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(RatingUpdateQueue.class);
+
+    private final MoviesService moviesService;
+
+    private final RatingPageCache ratingPageCache;
+
+    private final ConcurrentLinkedQueue<RatingDelta> queue = new ConcurrentLinkedQueue<>();
+
+    private final Semaphore capacity;
+
+    private final Duration offerTimeout;
+
+    private final int maxEventsPerFlush;
+
+    private final Duration drainTimeout;
+
+    // Held during JDBC batches; a monitor there would pin the carrier of a virtual thread
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    // Net changes that were drained from the queue, but are not written yet, guarded by flushLock
+    private final IntObjectMap<RatingDelta> pending = new IntObjectMap<>();
+
+    private final List<RatingDelta> pendingList = new ArrayList<>();
+
+    // Number of events merged into pending, guarded by flushLock
+    private long pendingEvents;
+
+    private final LongAdder enqueuedEvents = new LongAdder();
+
+    private final LongAdder appliedEvents = new LongAdder();
+
+    // Enqueues hold the read lock while they add events, drain takes the write lock to stop accepting:
+    // once drain has it, no event can be added after the final flush
+    private final ReentrantReadWriteLock acceptLock = new ReentrantReadWriteLock();
+
+    // Guarded by acceptLock
+    private boolean accepting = true;
+
+    @Autowired
+    public RatingUpdateQueue(
+            MoviesService moviesService,
+            RatingPageCache ratingPageCache,
+            @Value("${ratings.queue.capacity:100000}") int capacity,
+            @Value("${ratings.queue.offer-timeout:PT0.1S}") Duration offerTimeout,
+            @Value("${ratings.queue.max-events-per-flush:50000}") int maxEventsPerFlush,
+            @Value("${ratings.queue.drain-timeout:PT10S}") Duration drainTimeout
+    ) {
+        this.moviesService = moviesService;
+        this.ratingPageCache = ratingPageCache;
+        this.capacity = new Semaphore(capacity);
+        this.offerTimeout = offerTimeout;
+        this.maxEventsPerFlush = maxEventsPerFlush;
+        this.drainTimeout = drainTimeout;
+    }
+
+    /**
+     * Method to put rating events into the queue.
+     * Either all events are accepted or none of them, so the sender can safely retry.
+     * @param events rating events
+     * @throws RatingQueueFullException if there is no room for events during offer timeout
+     */
+    public void enqueue(List<RatingEventDTO> events) {
+        try {
+            if (!capacity.tryAcquire(events.size(), offerTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new RatingQueueFullException("Rating queue is full");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RatingQueueFullException("Rating queue is full");
+        }
+        Set<Integer> userIds = new HashSet<>();
+        acceptLock.readLock().lock();
+        try {
+            if (!accepting) {
+                capacity.release(events.size());
+                throw new RatingQueueFullException("Rating queue is shutting down");
+            }
+            for (RatingEventDTO event : events) {
+                queue.add(RatingDelta.of(event.getMovieId(), event));
+                if (event.getUserId() != null) {
+                    userIds.add(event.getUserId());
+                }
+            }
+        } finally {
+            acceptLock.readLock().unlock();
+        }
+        enqueuedEvents.add(events.size());
+        ratingPageCache.invalidateUsers(userIds);
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * @return number of events accepted since start
+     */
+    public long getEnqueuedEvents() {
+        return enqueuedEvents.sum();
+    }
+
+    /**
+     * @return number of events written to DB since start
+     */
+    public long getAppliedEvents() {
+        return appliedEvents.sum();
+    }
+
+    @Scheduled(fixedDelayString = "${ratings.queue.flush-interval:PT1S}")
+    public void scheduledFlush() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Failed to apply rating updates, they will be retried: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Method to drain the queue, merge events by movie and write them.
+     * If writing fails, merged changes are kept and written by the next flush.
+     * @return number of drained events
+     */
+    public int flush() {
+        flushLock.lock();
+        try {
+            int drained = 0;
+            RatingDelta delta;
+            while (drained < maxEventsPerFlush && (delta = queue.poll()) != null) {
+                RatingDelta merged = pending.get(delta.getMovieId());
+                if (merged == null) {
+                    pending.put(delta.getMovieId(), delta);
+                    pendingList.add(delta);
+                } else {
+                    merged.merge(delta);
+                }
+                drained++;
+            }
+            capacity.release(drained);
+            pendingEvents += drained;
+
+            if (!pendingList.isEmpty()) {
+                // Rows are always locked in the same order to avoid deadlocks with other writers
+                pendingList.sort(Comparator.comparingInt(RatingDelta::getMovieId));
+                moviesService.applyRatingDeltas(pendingList);
+                pending.clear();
+                pendingList.clear();
+                appliedEvents.add(pendingEvents);
+                pendingEvents = 0;
+            }
+            return drained;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Method to stop accepting events and write the queued ones.
+     * Gives up after drain timeout, so shutdown doesn't hang while DB is unavailable.
+     */
+    @PreDestroy
+    public void drain() {
+        acceptLock.writeLock().lock();
+        try {
+            accepting = false;
+        } finally {
+            acceptLock.writeLock().unlock();
+        }
+
+        long deadline = System.nanoTime() + drainTimeout.toNanos();
+        while (System.nanoTime() - deadline < 0) {
+            try {
+                // A successful flush leaves nothing pending, so the queue is drained once it is empty
+                if (flush() == 0 && queue.isEmpty()) {
+                    return;
+                }
+            } catch (RuntimeException e) {
+                log.warn("Failed to apply rating updates on shutdown, retrying: {}", e.getMessage());
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        log.error("Rating queue was not drained in {}, {} events are lost",
+                drainTimeout, getEnqueuedEvents() - getAppliedEvents());
+    }
+}
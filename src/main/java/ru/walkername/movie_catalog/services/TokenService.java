@@ -5,22 +5,134 @@ import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import ru.walkername.movie_catalog.models.VerifiedToken;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 @Service
 public class TokenService {
 
-    @Value("${auth.jwt.secret}")
-    private String secret;
+    private final JWTVerifier verifier;
 
-    public DecodedJWT validateToken(String token) throws JWTVerificationException {
-        JWTVerifier verifier = JWT.require(Algorithm.HMAC256(secret))
+    private final Clock clock;
+
+    // Keyed by SHA-256 of the token, so raw tokens are not kept in memory
+    private final Cache<String, VerifiedToken> verifiedTokens;
+
+    @Autowired
+    public TokenService(
+            @Value("${auth.jwt.secret}") String secret,
+            @Value("${auth.jwt.cache.max-size:10000}") long maxSize,
+            @Value("${auth.jwt.cache.max-ttl:PT5M}") Duration maxTtl
+    ) {
+        this(secret, maxSize, maxTtl, Clock.systemUTC(), Ticker.systemTicker(), ForkJoinPool.commonPool());
+    }
+
+    // Tests pass a fake clock and ticker, and a direct executor so size evictions are applied at once
+    TokenService(String secret, long maxSize, Duration maxTtl, Clock clock, Ticker ticker, Executor executor) {
+        this.verifier = ((JWTVerifier.BaseVerification) JWT.require(Algorithm.HMAC256(secret))
                 .withSubject("User details")
-                .withIssuer("auth-service")
+                .withIssuer("auth-service"))
+                .build(clock);
+        this.clock = clock;
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new UntilTokenExpires(maxTtl, clock))
+                .ticker(ticker)
+                .executor(executor)
+                .recordStats()
                 .build();
+    }
 
+    public DecodedJWT validateToken(String token) throws JWTVerificationException {
         return verifier.verify(token);
     }
 
+    /**
+     * Method to verify token and get its principal.
+     * Tokens that already passed verification are taken from the cache until they expire.
+     * @throws JWTVerificationException if token is malformed, has wrong signature or claims, or is expired
+     */
+    public VerifiedToken authenticate(String token) throws JWTVerificationException {
+        String key = digest(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(key);
+        if (cached != null && !cached.isExpiredAt(clock.instant())) {
+            return cached;
+        }
+
+        DecodedJWT jwt = verifier.verify(token);
+        VerifiedToken verified = new VerifiedToken(
+                jwt.getClaim("username").asString(),
+                jwt.getClaim("role").asString(),
+                jwt.getExpiresAtAsInstant()
+        );
+        verifiedTokens.put(key, verified);
+        return verified;
+    }
+
+    public CacheStats getCacheStats() {
+        return verifiedTokens.stats();
+    }
+
+    public long getCacheSize() {
+        return verifiedTokens.estimatedSize();
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Cached token lives until its exp claim, but not longer than maxTtl. Reads never prolong it.
+     */
+    private static class UntilTokenExpires implements Expiry<String, VerifiedToken> {
+
+        private final long maxTtlNanos;
+
+        private final Clock clock;
+
+        private UntilTokenExpires(Duration maxTtl, Clock clock) {
+            this.maxTtlNanos = maxTtl.toNanos();
+            this.clock = clock;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+            if (value.getExpiresAt() == null) {
+                return maxTtlNanos;
+            }
+            long untilExpiration = Duration.between(clock.instant(), value.getExpiresAt()).toNanos();
+            return Math.max(0, Math.min(untilExpiration, maxTtlNanos));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
@@ -0,0 +1,129 @@
+package ru.walkername.movie_catalog.util;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Burkhard-Keller tree of words by Levenshtein distance.
+ * Every child is stored under its distance to the parent, so by the triangle inequality
+ * a search within maxEdits of a word only descends into children at distance d - maxEdits..d + maxEdits
+ * of a node at distance d. A search visits a small part of the tree instead of every word.
+ * Words are never removed: callers skip words they no longer have and build a new tree when too many are stale.
+ * Not thread-safe.
+ */
+public class BkTree {
+
+    private Node root;
+
+    private int size;
+
+    /**
+     * Adds the word, does nothing if the tree already has it
+     */
+    public void add(String word) {
+        if (root == null) {
+            root = new Node(word);
+            size++;
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int distance = distance(word, node.word);
+            if (distance == 0) {
+                return;
+            }
+            Node child = node.child(distance);
+            if (child == null) {
+                node.setChild(distance, new Node(word));
+                size++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Method to find words within maxEdits of the word, the word itself included
+     * @param consumer receives every found word with its distance
+     */
+    public void search(String word, int maxEdits, ObjIntConsumer<String> consumer) {
+        if (root == null) {
+            return;
+        }
+        Deque<Node> toVisit = new ArrayDeque<>();
+        toVisit.push(root);
+        while (!toVisit.isEmpty()) {
+            Node node = toVisit.pop();
+            int distance = distance(word, node.word);
+            if (distance <= maxEdits) {
+                consumer.accept(node.word, distance);
+            }
+            if (node.children == null) {
+                continue;
+            }
+            int to = Math.min(distance + maxEdits, node.children.length - 1);
+            for (int edge = Math.max(1, distance - maxEdits); edge <= to; edge++) {
+                Node child = node.children[edge];
+                if (child != null) {
+                    toVisit.push(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of words in the tree
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Levenshtein distance: number of inserted, deleted and replaced characters
+     */
+    public static int distance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private static class Node {
+
+        private final String word;
+
+        // Indexed by distance to this node, allocated on the first child
+        private Node[] children;
+
+        private Node(String word) {
+            this.word = word;
+        }
+
+        private Node child(int distance) {
+            return children == null || distance >= children.length ? null : children[distance];
+        }
+
+        private void setChild(int distance, Node child) {
+            if (children == null) {
+                children = new Node[Math.max(distance + 1, 4)];
+            } else if (distance >= children.length) {
+                children = Arrays.copyOf(children, Math.max(distance + 1, children.length * 2));
+            }
+            children[distance] = child;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package ru.walkername.movie_catalog.util;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency of calls to a downstream service
+ */
+public class CallStats {
+
+    private final LongAdder calls = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public void recordSuccess(long nanos) {
+        record(nanos);
+    }
+
+    public void recordFailure(long nanos) {
+        failures.increment();
+        record(nanos);
+    }
+
+    /**
+     * Call was not made, because circuit breaker is open
+     */
+    public void recordRejected() {
+        rejected.increment();
+    }
+
+    private void record(long nanos) {
+        calls.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+}
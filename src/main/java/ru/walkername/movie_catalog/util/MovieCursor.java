@@ -0,0 +1,60 @@
+package ru.walkername.movie_catalog.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token of the rating-sorted movie listing.
+ * Token encodes sort direction and (averageRating, id) of the last movie of the page.
+ */
+public class MovieCursor {
+
+    private final boolean down;
+
+    private final double averageRating;
+
+    private final int id;
+
+    public MovieCursor(boolean down, double averageRating, int id) {
+        this.down = down;
+        this.averageRating = averageRating;
+        this.id = id;
+    }
+
+    public String encode() {
+        String raw = (down ? "d" : "a") + ":" + averageRating + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws MovieWrongValidationException if token is malformed
+     */
+    public static MovieCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            if (parts.length != 3 || !(parts[0].equals("d") || parts[0].equals("a"))) {
+                throw new MovieWrongValidationException("cursor - invalid continuation token;");
+            }
+            double averageRating = Double.parseDouble(parts[1]);
+            if (!Double.isFinite(averageRating)) {
+                throw new MovieWrongValidationException("cursor - invalid continuation token;");
+            }
+            return new MovieCursor(parts[0].equals("d"), averageRating, Integer.parseInt(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new MovieWrongValidationException("cursor - invalid continuation token;");
+        }
+    }
+
+    public boolean isDown() {
+        return down;
+    }
+
+    public double getAverageRating() {
+        return averageRating;
+    }
+
+    public int getId() {
+        return id;
+    }
+}
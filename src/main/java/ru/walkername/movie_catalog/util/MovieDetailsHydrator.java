@@ -0,0 +1,64 @@
+package ru.walkername.movie_catalog.util;
+
+import ru.walkername.movie_catalog.dto.MovieDetails;
+import ru.walkername.movie_catalog.dto.MovieSummary;
+import ru.walkername.movie_catalog.models.Rating;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Joins a page of ratings from rating service with movie summaries loaded from DB.
+ * Movies are indexed by id once, so the join costs O(ratings + movies)
+ * instead of O(ratings * movies) of the nested loop.
+ */
+public final class MovieDetailsHydrator {
+
+    private MovieDetailsHydrator() {
+
+    }
+
+    /**
+     * Method to collect movie ids that must be loaded for the ratings page
+     * @param ratings ratings page, may contain the same movie several times
+     * @return distinct movie ids in ascending order
+     */
+    public static List<Integer> distinctMovieIds(List<Rating> ratings) {
+        int[] ids = new int[ratings.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = ratings.get(i).getMovieId();
+        }
+        Arrays.sort(ids);
+
+        List<Integer> distinct = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                distinct.add(ids[i]);
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * Method to build movie details in the order of the ratings page
+     * @param ratings ratings page from rating service
+     * @param movies movies found by ids of the ratings page, in any order
+     * @return one movie details per rating; ratings of missing movies are skipped
+     */
+    public static List<MovieDetails> hydrate(List<Rating> ratings, List<MovieSummary> movies) {
+        IntObjectMap<MovieSummary> moviesById = new IntObjectMap<>(movies.size());
+        for (MovieSummary movie : movies) {
+            moviesById.put(movie.getId(), movie);
+        }
+
+        List<MovieDetails> movieDetailsList = new ArrayList<>(ratings.size());
+        for (Rating rating : ratings) {
+            MovieSummary movie = moviesById.get(rating.getMovieId());
+            if (movie != null) {
+                movieDetailsList.add(new MovieDetails(movie, rating));
+            }
+        }
+        return movieDetailsList;
+    }
+}
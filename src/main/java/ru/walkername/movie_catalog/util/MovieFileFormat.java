@@ -0,0 +1,32 @@
+package ru.walkername.movie_catalog.util;
+
+import java.util.Locale;
+
+/**
+ * Formats of bulk import and export of movies
+ */
+public enum MovieFileFormat {
+    NDJSON("application/x-ndjson"),
+    CSV("text/csv");
+
+    private final String contentType;
+
+    MovieFileFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @throws MovieWrongValidationException if the format is not supported
+     */
+    public static MovieFileFormat of(String value) {
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new MovieWrongValidationException("format - should be 'ndjson' or 'csv';");
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package ru.walkername.movie_catalog.util;
+
+public class MovieImportUnavailableException extends RuntimeException {
+
+    public MovieImportUnavailableException(String msg) {
+        super(msg);
+    }
+
+}
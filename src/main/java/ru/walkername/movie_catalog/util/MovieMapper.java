@@ -0,0 +1,39 @@
+package ru.walkername.movie_catalog.util;
+
+import ru.walkername.movie_catalog.dto.MovieDTO;
+import ru.walkername.movie_catalog.models.Movie;
+
+/**
+ * Conversions between MovieDTO and Movie, field by field.
+ * Behaves as the ModelMapper mapping it replaces: all fields of MovieDTO are copied,
+ * null description included, and fields missing in MovieDTO are left untouched.
+ */
+public final class MovieMapper {
+
+    private MovieMapper() {
+
+    }
+
+    public static Movie toMovie(MovieDTO movieDTO) {
+        Movie movie = new Movie();
+        copyInto(movieDTO, movie);
+        return movie;
+    }
+
+    public static MovieDTO toMovieDTO(Movie movie) {
+        MovieDTO movieDTO = new MovieDTO();
+        movieDTO.setTitle(movie.getTitle());
+        movieDTO.setReleaseYear(movie.getReleaseYear());
+        movieDTO.setDescription(movie.getDescription());
+        return movieDTO;
+    }
+
+    /**
+     * Method to apply edit of a movie, id and ratings of the movie are kept
+     */
+    public static void copyInto(MovieDTO movieDTO, Movie movie) {
+        movie.setTitle(movieDTO.getTitle());
+        movie.setReleaseYear(movieDTO.getReleaseYear());
+        movie.setDescription(movieDTO.getDescription());
+    }
+}
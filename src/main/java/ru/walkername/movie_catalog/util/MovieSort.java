@@ -0,0 +1,37 @@
+package ru.walkername.movie_catalog.util;
+
+import java.util.Locale;
+
+/**
+ * Orders of the paged movie listing, each one is served by an index of (column, id)
+ */
+public enum MovieSort {
+    // Plain average rating, a movie with a single vote may be on top
+    RATING("averageRating"),
+    // Average rating weighted by the number of ratings, see CatalogRating#rankScore
+    RANK("rankScore");
+
+    private final String property;
+
+    MovieSort(String property) {
+        this.property = property;
+    }
+
+    /**
+     * @return sorted property of Movie
+     */
+    public String getProperty() {
+        return property;
+    }
+
+    /**
+     * @throws MovieWrongValidationException if the order is not supported
+     */
+    public static MovieSort of(String value) {
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new MovieWrongValidationException("sort - should be 'rating' or 'rank';");
+        }
+    }
+}
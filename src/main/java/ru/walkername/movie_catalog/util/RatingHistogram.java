@@ -0,0 +1,102 @@
+package ru.walkername.movie_catalog.util;
+
+/**
+ * Statistics of a rating histogram: element i is the number of ratings equal to i.
+ * All values are exact, the histogram holds every rating the catalog was told about.
+ */
+public final class RatingHistogram {
+
+    public static final int BUCKETS = 11;
+
+    private RatingHistogram() {
+
+    }
+
+    /**
+     * Ratings are whole numbers from 0 to 10: NewRatingDTO rejects fractions with @Digits,
+     * so rounding and clamping here only guard against callers that skip validation
+     * @return index of the bucket of the rating
+     */
+    public static int bucket(double rating) {
+        return (int) Math.max(0, Math.min(BUCKETS - 1, Math.round(rating)));
+    }
+
+    public static long count(int[] histogram) {
+        long count = 0;
+        for (int n : histogram) {
+            count += n;
+        }
+        return count;
+    }
+
+    public static long sum(int[] histogram) {
+        long sum = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            sum += (long) i * histogram[i];
+        }
+        return sum;
+    }
+
+    /**
+     * @return mean rating, 0 if there are no ratings
+     */
+    public static double mean(int[] histogram) {
+        long count = count(histogram);
+        return count == 0 ? 0 : (double) sum(histogram) / count;
+    }
+
+    /**
+     * @return median rating, the mean of the two middle ratings when their number is even; 0 if there are no ratings
+     */
+    public static double median(int[] histogram) {
+        long count = count(histogram);
+        if (count == 0) {
+            return 0;
+        }
+        // Zero-based positions of the middle ratings, the same position when count is odd
+        int lower = valueAt(histogram, (count - 1) / 2);
+        int upper = valueAt(histogram, count / 2);
+        return (lower + upper) / 2.0;
+    }
+
+    /**
+     * @return population standard deviation of ratings, 0 if there are no ratings
+     */
+    public static double standardDeviation(int[] histogram) {
+        long count = count(histogram);
+        if (count == 0) {
+            return 0;
+        }
+        double mean = (double) sum(histogram) / count;
+        double squares = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            squares += histogram[i] * (i - mean) * (i - mean);
+        }
+        return Math.sqrt(squares / count);
+    }
+
+    /**
+     * Mean rating pulled towards the catalog mean as if the movie had priorWeight more ratings equal to it:
+     * movies with a few ratings don't outrank movies with many
+     * @param globalMean mean of all ratings of the catalog
+     * @param priorWeight number of imaginary ratings, 0 -> plain mean
+     */
+    public static double bayesianScore(int[] histogram, double globalMean, double priorWeight) {
+        long count = count(histogram);
+        if (count == 0 && priorWeight == 0) {
+            return 0;
+        }
+        return (sum(histogram) + priorWeight * globalMean) / (count + priorWeight);
+    }
+
+    private static int valueAt(int[] histogram, long position) {
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (position < seen) {
+                return i;
+            }
+        }
+        return histogram.length - 1;
+    }
+}
@@ -0,0 +1,9 @@
+package ru.walkername.movie_catalog.util;
+
+public class RatingQueueFullException extends RuntimeException {
+
+    public RatingQueueFullException(String msg) {
+        super(msg);
+    }
+
+}
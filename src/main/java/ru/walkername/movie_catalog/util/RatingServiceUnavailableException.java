@@ -0,0 +1,13 @@
+package ru.walkername.movie_catalog.util;
+
+public class RatingServiceUnavailableException extends RuntimeException {
+
+    public RatingServiceUnavailableException(String msg) {
+        super(msg);
+    }
+
+    public RatingServiceUnavailableException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
+
+}
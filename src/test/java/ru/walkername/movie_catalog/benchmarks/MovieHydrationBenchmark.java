@@ -0,0 +1,75 @@
+package ru.walkername.movie_catalog.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.walkername.movie_catalog.dto.MovieDetails;
+import ru.walkername.movie_catalog.dto.MovieSummary;
+import ru.walkername.movie_catalog.models.Rating;
+import ru.walkername.movie_catalog.util.MovieDetailsHydrator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old nested-loop join of getMoviesByUser with {@link MovieDetailsHydrator}.
+ * Run with: mvn -Pbenchmarks -DskipTests verify -Djmh.includes=MovieHydrationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MovieHydrationBenchmark {
+
+	@Param({"10", "100", "1000", "10000"})
+	private int pageSize;
+
+	private List<Rating> ratings;
+
+	private List<MovieSummary> movies;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		ratings = new ArrayList<>(pageSize);
+		movies = new ArrayList<>(pageSize);
+		Set<Integer> movieIds = new HashSet<>();
+		for (int i = 0; i < pageSize; i++) {
+			// some movies are rated twice, every tenth movie is missing in DB
+			int movieId = random.nextInt(pageSize * 2);
+			ratings.add(new Rating(1, movieId, random.nextInt(11)));
+			if (i % 10 != 0 && movieIds.add(movieId)) {
+				movies.add(new MovieSummary(movieId, "Movie " + movieId, 2000, 5.0, 10));
+			}
+		}
+		Collections.shuffle(movies, random);
+	}
+
+	@Benchmark
+	public List<MovieDetails> nestedLoop() {
+		List<MovieDetails> movieDetailsList = new ArrayList<>();
+		for (Rating rating : ratings) {
+			for (MovieSummary movie : movies) {
+				if (rating.getMovieId() == movie.getId()) {
+					movieDetailsList.add(new MovieDetails(movie, rating));
+				}
+			}
+		}
+		return movieDetailsList;
+	}
+
+	@Benchmark
+	public List<MovieDetails> hashJoin() {
+		return MovieDetailsHydrator.hydrate(ratings, movies);
+	}
+
+	@Benchmark
+	public List<Integer> distinctMovieIds() {
+		return MovieDetailsHydrator.distinctMovieIds(ratings);
+	}
+}
@@ -0,0 +1,71 @@
+package ru.walkername.movie_catalog.benchmarks;
+
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+import ru.walkername.movie_catalog.dto.MovieDTO;
+import ru.walkername.movie_catalog.models.Movie;
+import ru.walkername.movie_catalog.util.MovieMapper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of DTO and entity conversions done by MoviesController for add and edit:
+ * reflective ModelMapper used before and hand-written {@link MovieMapper}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MovieMappingBenchmark {
+
+	private ModelMapper modelMapper;
+
+	private MovieDTO movieDTO;
+
+	private Movie movie;
+
+	@Setup
+	public void setUp() {
+		modelMapper = new ModelMapper();
+		movieDTO = new MovieDTO();
+		movieDTO.setTitle("The Movie");
+		movieDTO.setReleaseYear(2001);
+		movieDTO.setDescription("d".repeat(300));
+		movie = new Movie("Old title", 1999, "", 7.5, 120);
+		movie.setId(42);
+	}
+
+	@Benchmark
+	public Movie dtoToNewMovie() {
+		return modelMapper.map(movieDTO, Movie.class);
+	}
+
+	@Benchmark
+	public Movie dtoOntoExistingMovie() {
+		modelMapper.map(movieDTO, movie);
+		return movie;
+	}
+
+	@Benchmark
+	public MovieDTO movieToDto() {
+		return modelMapper.map(movie, MovieDTO.class);
+	}
+
+	@Benchmark
+	public Movie dtoToNewMovieMapper() {
+		return MovieMapper.toMovie(movieDTO);
+	}
+
+	@Benchmark
+	public Movie dtoOntoExistingMovieMapper() {
+		MovieMapper.copyInto(movieDTO, movie);
+		return movie;
+	}
+
+	@Benchmark
+	public MovieDTO movieToDtoMapper() {
+		return MovieMapper.toMovieDTO(movie);
+	}
+}
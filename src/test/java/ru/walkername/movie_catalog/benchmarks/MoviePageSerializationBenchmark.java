@@ -0,0 +1,55 @@
+package ru.walkername.movie_catalog.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import ru.walkername.movie_catalog.dto.MovieSummary;
+import ru.walkername.movie_catalog.models.Movie;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of a listing page: whole movies as returned with fields=description,
+ * and summaries returned by default
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoviePageSerializationBenchmark {
+
+	@Param({"10", "100", "1000"})
+	private int pageSize;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private List<Movie> movies;
+
+	private List<MovieSummary> summaries;
+
+	@Setup
+	public void setUp() {
+		movies = new ArrayList<>(pageSize);
+		summaries = new ArrayList<>(pageSize);
+		for (int i = 0; i < pageSize; i++) {
+			Movie movie = new Movie("Movie " + i, 2000 + i % 20, "Description of the movie ".repeat(20), 7.25, 1000 + i);
+			movie.setId(i);
+			movies.add(movie);
+			summaries.add(new MovieSummary(movie));
+		}
+	}
+
+	@Benchmark
+	public byte[] movies() throws JsonProcessingException {
+		return objectMapper.writeValueAsBytes(movies);
+	}
+
+	@Benchmark
+	public byte[] summaries() throws JsonProcessingException {
+		return objectMapper.writeValueAsBytes(summaries);
+	}
+}
@@ -0,0 +1,95 @@
+package ru.walkername.movie_catalog.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.walkername.movie_catalog.dto.RatingDelta;
+import ru.walkername.movie_catalog.models.Movie;
+import ru.walkername.movie_catalog.util.IntObjectMap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Math of updateAverageRating for a burst of rating events: re-deriving the average from the previous one
+ * per event, keeping sum and count per event, and merging events into one net change per movie
+ * like RatingUpdateQueue does before its JDBC batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RatingUpdateBenchmark {
+
+	@Param({"100", "10000"})
+	private int movieCount;
+
+	@Param({"10000"})
+	private int eventCount;
+
+	private Movie[] movies;
+
+	private int[] eventMovies;
+
+	private double[] eventRatings;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		movies = new Movie[movieCount];
+		for (int i = 0; i < movieCount; i++) {
+			movies[i] = new Movie("Movie " + i, 2000, "", 5.0, 10);
+			movies[i].setId(i);
+			movies[i].setRatingSum(50.0);
+		}
+		eventMovies = new int[eventCount];
+		eventRatings = new double[eventCount];
+		for (int i = 0; i < eventCount; i++) {
+			eventMovies[i] = random.nextInt(movieCount);
+			eventRatings[i] = random.nextInt(11);
+		}
+	}
+
+	@Benchmark
+	public Movie[] averageFromAverage() {
+		for (int i = 0; i < eventCount; i++) {
+			Movie movie = movies[eventMovies[i]];
+			int scores = movie.getScores() + 1;
+			movie.setAverageRating((movie.getAverageRating() * movie.getScores() + eventRatings[i]) / scores);
+			movie.setScores(scores);
+		}
+		return movies;
+	}
+
+	@Benchmark
+	public Movie[] sumAndCount() {
+		for (int i = 0; i < eventCount; i++) {
+			Movie movie = movies[eventMovies[i]];
+			movie.setRatingSum(movie.getRatingSum() + eventRatings[i]);
+			movie.setScores(movie.getScores() + 1);
+			movie.setAverageRating(movie.getRatingSum() / movie.getScores());
+		}
+		return movies;
+	}
+
+	@Benchmark
+	public List<RatingDelta> coalescedDeltas() {
+		IntObjectMap<RatingDelta> pending = new IntObjectMap<>();
+		List<RatingDelta> pendingList = new ArrayList<>();
+		for (int i = 0; i < eventCount; i++) {
+			RatingDelta delta = new RatingDelta(eventMovies[i], eventRatings[i], 1);
+			RatingDelta merged = pending.get(delta.getMovieId());
+			if (merged == null) {
+				pending.put(delta.getMovieId(), delta);
+				pendingList.add(delta);
+			} else {
+				merged.merge(delta);
+			}
+		}
+		pendingList.sort(Comparator.comparingInt(RatingDelta::getMovieId));
+		return pendingList;
+	}
+}
@@ -0,0 +1,65 @@
+package ru.walkername.movie_catalog.benchmarks;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.openjdk.jmh.annotations.*;
+import ru.walkername.movie_catalog.models.VerifiedToken;
+import ru.walkername.movie_catalog.services.TokenService;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of JWT checks in JWTFilter: the old path built a verifier and decoded claims
+ * on every request, the new one reuses the verifier and caches verified tokens.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenValidationBenchmark {
+
+	private static final String SECRET = "benchmark-secret";
+
+	private TokenService tokenService;
+
+	private String token;
+
+	@Setup
+	public void setUp() {
+		tokenService = new TokenService(SECRET, 10_000, Duration.ofMinutes(5));
+		token = JWT.create()
+				.withSubject("User details")
+				.withIssuer("auth-service")
+				.withClaim("username", "user")
+				.withClaim("role", "USER")
+				.withExpiresAt(Instant.now().plus(Duration.ofHours(1)))
+				.sign(Algorithm.HMAC256(SECRET));
+	}
+
+	@Benchmark
+	public String verifierPerRequest() {
+		JWTVerifier verifier = JWT.require(Algorithm.HMAC256(SECRET))
+				.withSubject("User details")
+				.withIssuer("auth-service")
+				.build();
+		DecodedJWT jwt = verifier.verify(token);
+		return jwt.getClaim("role").asString() + jwt.getClaim("username").asString();
+	}
+
+	@Benchmark
+	public String sharedVerifier() {
+		DecodedJWT jwt = tokenService.validateToken(token);
+		return jwt.getClaim("role").asString() + jwt.getClaim("username").asString();
+	}
+
+	@Benchmark
+	public VerifiedToken cachedAuthentication() {
+		return tokenService.authenticate(token);
+	}
+}
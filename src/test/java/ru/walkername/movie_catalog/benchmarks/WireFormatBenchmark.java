@@ -0,0 +1,90 @@
+package ru.walkername.movie_catalog.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.openjdk.jmh.annotations.*;
+import ru.walkername.movie_catalog.models.Movie;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * CPU per page of 100 movies in each response format of WireFormatConfig.
+ * Bytes per page are printed once by setUp, they don't depend on timing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+	private static final int PAGE_SIZE = 100;
+
+	private final ObjectMapper json = new ObjectMapper();
+
+	private final ObjectMapper jsonBlackbird = new ObjectMapper().registerModule(new BlackbirdModule());
+
+	private final ObjectMapper cbor = new ObjectMapper(new CBORFactory()).registerModule(new BlackbirdModule());
+
+	private final ObjectMapper smile = new ObjectMapper(new SmileFactory()).registerModule(new BlackbirdModule());
+
+	private List<Movie> movies;
+
+	@Setup
+	public void setUp() throws IOException {
+		movies = new ArrayList<>(PAGE_SIZE);
+		for (int i = 0; i < PAGE_SIZE; i++) {
+			Movie movie = new Movie("Movie " + i, 1990 + i % 30, "Description of the movie number " + i + ". ".repeat(10), 6.5 + i % 30 / 10.0, 100 + i);
+			movie.setId(1000 + i);
+			movies.add(movie);
+		}
+		System.out.printf(
+				"%nBytes per page of %d movies: json=%d, json+gzip=%d, cbor=%d, cbor+gzip=%d, smile=%d, smile+gzip=%d%n",
+				PAGE_SIZE,
+				json.writeValueAsBytes(movies).length, gzip(json.writeValueAsBytes(movies)).length,
+				cbor.writeValueAsBytes(movies).length, gzip(cbor.writeValueAsBytes(movies)).length,
+				smile.writeValueAsBytes(movies).length, gzip(smile.writeValueAsBytes(movies)).length
+		);
+	}
+
+	@Benchmark
+	public byte[] json() throws IOException {
+		return json.writeValueAsBytes(movies);
+	}
+
+	@Benchmark
+	public byte[] jsonBlackbird() throws IOException {
+		return jsonBlackbird.writeValueAsBytes(movies);
+	}
+
+	@Benchmark
+	public byte[] jsonGzip() throws IOException {
+		return gzip(jsonBlackbird.writeValueAsBytes(movies));
+	}
+
+	@Benchmark
+	public byte[] cbor() throws IOException {
+		return cbor.writeValueAsBytes(movies);
+	}
+
+	@Benchmark
+	public byte[] smile() throws IOException {
+		return smile.writeValueAsBytes(movies);
+	}
+
+	private static byte[] gzip(byte[] bytes) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(bytes);
+		}
+		return out.toByteArray();
+	}
+}
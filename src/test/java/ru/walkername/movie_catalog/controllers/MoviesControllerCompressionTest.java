@@ -0,0 +1,144 @@
+package ru.walkername.movie_catalog.controllers;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import ru.walkername.movie_catalog.config.WireFormatConfig;
+import ru.walkername.movie_catalog.dto.MovieSummary;
+import ru.walkername.movie_catalog.services.CatalogRating;
+import ru.walkername.movie_catalog.services.CatalogVersion;
+import ru.walkername.movie_catalog.services.MovieExportService;
+import ru.walkername.movie_catalog.services.MovieImportService;
+import ru.walkername.movie_catalog.services.MoviesService;
+import ru.walkername.movie_catalog.services.RatingUpdateQueue;
+import ru.walkername.movie_catalog.util.MovieSort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the controller in embedded Tomcat with the compression settings of wire-format.properties:
+ * list responses carry a weak ETag, which must not stop Tomcat from compressing them
+ */
+class MoviesControllerCompressionTest {
+
+	private static final int PAGE_SIZE = 100;
+
+	private static ServletWebServerApplicationContext context;
+
+	private static URI page;
+
+	private final HttpClient httpClient = HttpClient.newHttpClient();
+
+	@BeforeAll
+	static void startServer() {
+		context = (ServletWebServerApplicationContext) new SpringApplicationBuilder(ControllerApplication.class)
+				.properties("server.port=0", "spring.main.banner-mode=off")
+				.run();
+		page = URI.create("http://localhost:" + context.getWebServer().getPort() + "/movies?page=0&limit=" + PAGE_SIZE);
+	}
+
+	@AfterAll
+	static void stopServer() {
+		context.close();
+	}
+
+	@Test
+	void pageOfHundredSummariesIsGzipped() throws Exception {
+		HttpResponse<byte[]> response = httpClient.send(
+				HttpRequest.newBuilder(page).header("Accept-Encoding", "gzip").build(),
+				HttpResponse.BodyHandlers.ofByteArray()
+		);
+
+		assertThat(response.statusCode()).isEqualTo(200);
+		assertThat(response.headers().firstValue("Content-Encoding")).hasValue("gzip");
+		assertThat(response.headers().firstValue("ETag")).hasValueSatisfying(etag -> assertThat(etag).startsWith("W/\""));
+		// gzip magic number
+		assertThat(response.body()[0]).isEqualTo((byte) 0x1f);
+		assertThat(response.body()[1]).isEqualTo((byte) 0x8b);
+	}
+
+	@Test
+	void weakETagIsRevalidatedWithoutBody() throws Exception {
+		HttpResponse<byte[]> first = httpClient.send(
+				HttpRequest.newBuilder(page).header("Accept-Encoding", "gzip").build(),
+				HttpResponse.BodyHandlers.ofByteArray()
+		);
+		String etag = first.headers().firstValue("ETag").orElseThrow();
+
+		HttpResponse<byte[]> second = httpClient.send(
+				HttpRequest.newBuilder(page).header("Accept-Encoding", "gzip").header("If-None-Match", etag).build(),
+				HttpResponse.BodyHandlers.ofByteArray()
+		);
+
+		assertThat(second.statusCode()).isEqualTo(304);
+		assertThat(second.body()).isEmpty();
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	@ImportAutoConfiguration({
+			ServletWebServerFactoryAutoConfiguration.class,
+			DispatcherServletAutoConfiguration.class,
+			WebMvcAutoConfiguration.class,
+			HttpMessageConvertersAutoConfiguration.class,
+			JacksonAutoConfiguration.class
+	})
+	@Import({MoviesController.class, WireFormatConfig.class})
+	static class ControllerApplication {
+
+		@Bean
+		MoviesService moviesService() {
+			List<MovieSummary> summaries = new ArrayList<>(PAGE_SIZE);
+			for (int i = 1; i <= PAGE_SIZE; i++) {
+				summaries.add(new MovieSummary(i, "Movie title number " + i, 1950 + i % 70, (i % 100) / 10.0, i * 3));
+			}
+			MoviesService moviesService = mock(MoviesService.class);
+			when(moviesService.getMovieSummariesWithPagination(0, PAGE_SIZE, true, MovieSort.RATING)).thenReturn(summaries);
+			return moviesService;
+		}
+
+		@Bean
+		CatalogVersion catalogVersion() {
+			return new CatalogVersion();
+		}
+
+		@Bean
+		RatingUpdateQueue ratingUpdateQueue() {
+			return mock(RatingUpdateQueue.class);
+		}
+
+		@Bean
+		MovieImportService movieImportService() {
+			return mock(MovieImportService.class);
+		}
+
+		@Bean
+		MovieExportService movieExportService() {
+			return mock(MovieExportService.class);
+		}
+
+		@Bean
+		CatalogRating catalogRating() {
+			return mock(CatalogRating.class);
+		}
+	}
+}
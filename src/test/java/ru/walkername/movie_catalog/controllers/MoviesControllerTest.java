@@ -0,0 +1,277 @@
+package ru.walkername.movie_catalog.controllers;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import ru.walkername.movie_catalog.config.WireFormatConfig;
+import ru.walkername.movie_catalog.dto.MovieDTO;
+import ru.walkername.movie_catalog.dto.MovieSummary;
+import ru.walkername.movie_catalog.dto.NewRatingDTO;
+import ru.walkername.movie_catalog.models.Movie;
+import ru.walkername.movie_catalog.services.CatalogRating;
+import ru.walkername.movie_catalog.services.CatalogVersion;
+import ru.walkername.movie_catalog.services.MovieExportService;
+import ru.walkername.movie_catalog.services.MovieImportService;
+import ru.walkername.movie_catalog.services.MoviesService;
+import ru.walkername.movie_catalog.services.RatingUpdateQueue;
+import ru.walkername.movie_catalog.util.MovieImportUnavailableException;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the controller in embedded Tomcat with mocked services
+ */
+class MoviesControllerTest {
+
+	private static ServletWebServerApplicationContext context;
+
+	private static String baseUrl;
+
+	private final HttpClient httpClient = HttpClient.newHttpClient();
+
+	@BeforeAll
+	static void startServer() {
+		context = (ServletWebServerApplicationContext) new SpringApplicationBuilder(ControllerApplication.class)
+				.properties("server.port=0", "spring.main.banner-mode=off")
+				.run();
+		baseUrl = "http://localhost:" + context.getWebServer().getPort() + "/movies";
+	}
+
+	@AfterAll
+	static void stopServer() {
+		context.close();
+	}
+
+	@AfterEach
+	void resetMocks() {
+		reset(
+				context.getBean(MoviesService.class),
+				context.getBean(RatingUpdateQueue.class),
+				context.getBean(MovieImportService.class)
+		);
+	}
+
+	@Test
+	void fractionalRatingIsRejected() throws Exception {
+		HttpResponse<String> response = patch("/update-avg-rating/1", "{\"rating\": 7.5}");
+
+		assertThat(response.statusCode()).isEqualTo(400);
+		assertThat(response.body()).contains("rating - Rating should be a whole number");
+		verify(context.getBean(MoviesService.class), never()).updateAverageRating(anyInt(), any(NewRatingDTO.class));
+	}
+
+	@Test
+	void fractionalOldRatingIsRejected() throws Exception {
+		HttpResponse<String> response = patch("/update-avg-rating/1", "{\"rating\": 7, \"oldRating\": 6.5, \"update\": true}");
+
+		assertThat(response.statusCode()).isEqualTo(400);
+		assertThat(response.body()).contains("oldRating - Rating should be a whole number");
+	}
+
+	@Test
+	void wholeRatingIsAccepted() throws Exception {
+		HttpResponse<String> response = patch("/update-avg-rating/1", "{\"rating\": 7.0}");
+
+		assertThat(response.statusCode()).isEqualTo(200);
+		verify(context.getBean(MoviesService.class)).updateAverageRating(anyInt(), any(NewRatingDTO.class));
+	}
+
+	@Test
+	void fractionalRatingInBulkIsRejected() throws Exception {
+		HttpResponse<String> response = patch(
+				"/update-avg-rating",
+				"{\"events\": [{\"movieId\": 1, \"rating\": 8}, {\"movieId\": 2, \"rating\": 7.5}]}"
+		);
+
+		assertThat(response.statusCode()).isEqualTo(400);
+		verify(context.getBean(RatingUpdateQueue.class), never()).enqueue(anyList());
+	}
+
+	@Test
+	void editDoesNotMergeCachedMovie() throws Exception {
+		HttpResponse<String> response = patch("/edit/1", "{\"title\": \"New title\", \"releaseYear\": 2001}");
+
+		assertThat(response.statusCode()).isEqualTo(200);
+		MoviesService moviesService = context.getBean(MoviesService.class);
+		verify(moviesService).edit(eq(1), any(MovieDTO.class));
+		verify(moviesService, never()).findOne(anyInt());
+		verify(moviesService, never()).save(any(Movie.class));
+	}
+
+	@Test
+	void movieIsRevalidatedByItsVersion() throws Exception {
+		MoviesService moviesService = context.getBean(MoviesService.class);
+		when(moviesService.findOne(5)).thenReturn(movie(5, 3));
+
+		HttpResponse<String> first = get("/5", null);
+		assertThat(first.statusCode()).isEqualTo(200);
+		assertThat(first.headers().firstValue("ETag")).hasValue("W/\"m5-3\"");
+		assertThat(first.body()).doesNotContain("version", "ratingSum", "ratingHistogram", "rankScore");
+
+		HttpResponse<String> second = get("/5", "W/\"m5-3\"");
+		assertThat(second.statusCode()).isEqualTo(304);
+		assertThat(second.body()).isEmpty();
+
+		// A rating or an edit changed the movie
+		when(moviesService.findOne(5)).thenReturn(movie(5, 4));
+		HttpResponse<String> third = get("/5", "W/\"m5-3\"");
+		assertThat(third.statusCode()).isEqualTo(200);
+		assertThat(third.headers().firstValue("ETag")).hasValue("W/\"m5-4\"");
+	}
+
+	@Test
+	void countIsRevalidatedByCatalogVersion() throws Exception {
+		MoviesService moviesService = context.getBean(MoviesService.class);
+		when(moviesService.getMoviesNumber()).thenReturn(42L);
+
+		HttpResponse<String> first = get("/count", null);
+		assertThat(first.statusCode()).isEqualTo(200);
+		assertThat(first.body()).isEqualTo("42");
+		assertThat(first.headers().firstValue("Cache-Control")).hasValueSatisfying(value -> assertThat(value).contains("public"));
+		String etag = first.headers().firstValue("ETag").orElseThrow();
+
+		HttpResponse<String> second = get("/count", etag);
+		assertThat(second.statusCode()).isEqualTo(304);
+		assertThat(second.body()).isEmpty();
+		verify(moviesService, times(1)).getMoviesNumber();
+
+		context.getBean(CatalogVersion.class).increment();
+		assertThat(get("/count", etag).statusCode()).isEqualTo(200);
+	}
+
+	@Test
+	void searchIsRevalidatedByCatalogVersion() throws Exception {
+		MoviesService moviesService = context.getBean(MoviesService.class);
+		doReturn(List.of(new MovieSummary(5, "Movie", 2000, 7.0, 3)))
+				.when(moviesService).findByTitleStartingWith("Mov", 10, false);
+
+		HttpResponse<String> first = get("/search?query=Mov", null);
+		assertThat(first.statusCode()).isEqualTo(200);
+		assertThat(first.body()).contains("\"title\":\"Movie\"");
+		String etag = first.headers().firstValue("ETag").orElseThrow();
+
+		HttpResponse<String> second = get("/search?query=Mov", etag);
+		assertThat(second.statusCode()).isEqualTo(304);
+		assertThat(second.body()).isEmpty();
+		verify(moviesService, times(1)).findByTitleStartingWith("Mov", 10, false);
+
+		context.getBean(CatalogVersion.class).increment();
+		assertThat(get("/search?query=Mov", etag).statusCode()).isEqualTo(200);
+	}
+
+	@Test
+	void importIsRefusedWithConflictWhileDuplicatesExist() throws Exception {
+		when(context.getBean(MovieImportService.class).importMovies(any(), any(), any()))
+				.thenThrow(new MovieImportUnavailableException("Import is unavailable"));
+
+		HttpResponse<String> response = httpClient.send(
+				HttpRequest.newBuilder(URI.create(baseUrl + "/import"))
+						.header("Content-Type", "application/x-ndjson")
+						.POST(HttpRequest.BodyPublishers.ofString("{\"title\": \"Up\", \"releaseYear\": 2009}\n"))
+						.build(),
+				HttpResponse.BodyHandlers.ofString()
+		);
+
+		assertThat(response.statusCode()).isEqualTo(409);
+		assertThat(response.body()).contains("Import is unavailable");
+	}
+
+	private HttpResponse<String> get(String path, String ifNoneMatch) throws Exception {
+		HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+				.header("Accept", "application/json");
+		if (ifNoneMatch != null) {
+			request.header("If-None-Match", ifNoneMatch);
+		}
+		return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+	}
+
+	private HttpResponse<String> patch(String path, String json) throws Exception {
+		return httpClient.send(
+				HttpRequest.newBuilder(URI.create(baseUrl + path))
+						.header("Content-Type", "application/json")
+						.method("PATCH", HttpRequest.BodyPublishers.ofString(json))
+						.build(),
+				HttpResponse.BodyHandlers.ofString()
+		);
+	}
+
+	private static Movie movie(int id, long version) {
+		Movie movie = new Movie("Movie " + id, 2000, null, 7.0, 3);
+		movie.setId(id);
+		movie.setVersion(version);
+		return movie;
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	@ImportAutoConfiguration({
+			ServletWebServerFactoryAutoConfiguration.class,
+			DispatcherServletAutoConfiguration.class,
+			WebMvcAutoConfiguration.class,
+			HttpMessageConvertersAutoConfiguration.class,
+			JacksonAutoConfiguration.class,
+			ValidationAutoConfiguration.class
+	})
+	@Import({MoviesController.class, WireFormatConfig.class})
+	static class ControllerApplication {
+
+		@Bean
+		MoviesService moviesService() {
+			return mock(MoviesService.class);
+		}
+
+		@Bean
+		CatalogVersion catalogVersion() {
+			return new CatalogVersion();
+		}
+
+		@Bean
+		RatingUpdateQueue ratingUpdateQueue() {
+			return mock(RatingUpdateQueue.class);
+		}
+
+		@Bean
+		MovieImportService movieImportService() {
+			return mock(MovieImportService.class);
+		}
+
+		@Bean
+		MovieExportService movieExportService() {
+			return mock(MovieExportService.class);
+		}
+
+		@Bean
+		CatalogRating catalogRating() {
+			return mock(CatalogRating.class);
+		}
+	}
+}
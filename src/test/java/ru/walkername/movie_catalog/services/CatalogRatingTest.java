@@ -0,0 +1,105 @@
+package ru.walkername.movie_catalog.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import ru.walkername.movie_catalog.dto.MovieStats;
+import ru.walkername.movie_catalog.models.Movie;
+import ru.walkername.movie_catalog.repositories.MoviesJdbcRepository;
+import ru.walkername.movie_catalog.repositories.MoviesRepository;
+import ru.walkername.movie_catalog.util.RatingHistogram;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CatalogRatingTest {
+
+	private final CatalogRating catalogRating = new CatalogRating(
+			mock(MoviesRepository.class),
+			mock(MoviesJdbcRepository.class),
+			new CatalogVersion(),
+			25,
+			0.01,
+			1000
+	);
+
+	@Test
+	void statsOfFullyHistogrammedMovieAreComplete() {
+		// Ratings 2, 8, 8, 10
+		Movie movie = movie(new int[]{0, 0, 1, 0, 0, 0, 0, 0, 2, 0, 1}, 28, 4);
+
+		MovieStats stats = catalogRating.statsOf(movie);
+
+		assertThat(stats.isComplete()).isTrue();
+		assertThat(stats.getCount()).isEqualTo(4);
+		assertThat(stats.getMean()).isEqualTo(7.0);
+		assertThat(stats.getMedian()).isEqualTo(8.0);
+		assertThat(stats.getBayesianScore()).isCloseTo(
+				RatingHistogram.bayesianScore(movie.getRatingHistogram(), catalogRating.getMean(), 25), within(1e-9)
+		);
+	}
+
+	@Test
+	void statsOfMovieRatedBeforeHistogramTakeMeanFromSum() {
+		// Ten ratings with mean 6 were given before the histogram existed, then one rating 9
+		int[] histogram = new int[RatingHistogram.BUCKETS];
+		histogram[9] = 1;
+		Movie movie = movie(histogram, 69, 11);
+
+		MovieStats stats = catalogRating.statsOf(movie);
+
+		assertThat(stats.isComplete()).isFalse();
+		assertThat(stats.getCount()).isEqualTo(1);
+		assertThat(stats.getScores()).isEqualTo(11);
+		assertThat(stats.getMean()).isCloseTo(69.0 / 11, within(1e-9));
+		assertThat(stats.getBayesianScore()).isEqualTo(catalogRating.rankScore(69, 11));
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+			"0, 0, 0",
+			"9, 1, 0",
+			"69, 11, 0",
+			"28, 4, 6.5",
+			"250000, 40000, 7.25"
+	})
+	void rankScoreMatchesStatementsOfRepository(double ratingSum, int scores, double mean) {
+		MoviesRepository moviesRepository = mock(MoviesRepository.class);
+		when(moviesRepository.findGlobalAverageRating()).thenReturn(mean);
+		CatalogRating rating = new CatalogRating(moviesRepository, mock(MoviesJdbcRepository.class), new CatalogVersion(), 25, 0.01, 1000);
+		rating.refresh();
+		double priorSum = rating.getPriorSum();
+		double priorWeight = rating.getPriorWeight();
+
+		// rank_score of RERANK_SQL: COALESCE((rating_sum + priorSum) / NULLIF(scores + priorWeight, 0), 0)
+		double weight = scores + priorWeight;
+		double rerank = weight == 0 ? 0 : (ratingSum + priorSum) / weight;
+		// rank_score of ADD_RATING_SQL: (rating_sum + delta + priorSum) / (scores + added + priorWeight),
+		// here for a movie that had one rating less before a rating 7 was added
+		double delta = 7;
+		double added = (ratingSum - delta + delta + priorSum) / (scores - 1 + 1 + priorWeight);
+
+		assertThat(rating.rankScore(ratingSum, scores)).isCloseTo(rerank, within(1e-12));
+		assertThat(rating.rankScore(ratingSum, scores)).isCloseTo(added, within(1e-12));
+	}
+
+	@Test
+	void rankScoreWithoutPriorWeightAndRatingsIsZero() {
+		CatalogRating rating = new CatalogRating(
+				mock(MoviesRepository.class), mock(MoviesJdbcRepository.class), new CatalogVersion(), 0, 0.01, 1000
+		);
+
+		// NULLIF(scores + 0, 0) makes the division NULL, COALESCE turns it into 0
+		assertThat(rating.rankScore(0, 0)).isZero();
+	}
+
+	private static Movie movie(int[] histogram, double ratingSum, int scores) {
+		Movie movie = new Movie("Title", 2000, "Description", ratingSum / scores, scores);
+		movie.setId(1);
+		movie.setRatingSum(ratingSum);
+		movie.setRatingHistogram(histogram);
+		return movie;
+	}
+}
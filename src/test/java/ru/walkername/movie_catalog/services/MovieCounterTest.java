@@ -0,0 +1,44 @@
+package ru.walkername.movie_catalog.services;
+
+import org.junit.jupiter.api.Test;
+import ru.walkername.movie_catalog.repositories.MoviesJdbcRepository;
+import ru.walkername.movie_catalog.repositories.MoviesRepository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MovieCounterTest {
+
+	private final MoviesRepository moviesRepository = mock(MoviesRepository.class);
+
+	private final CatalogVersion catalogVersion = new CatalogVersion();
+
+	private final MovieCounter counter = new MovieCounter(moviesRepository, mock(MoviesJdbcRepository.class), catalogVersion);
+
+	@Test
+	void correctingReconciliationChangesCatalogVersion() {
+		when(moviesRepository.count()).thenReturn(10L);
+		counter.reconcile();
+		counter.add(1);
+		String etag = catalogVersion.etag();
+
+		// The insert was counted twice: once by the exact count, once after its commit
+		counter.reconcile();
+
+		assertThat(counter.get()).isEqualTo(10);
+		assertThat(catalogVersion.etag()).isNotEqualTo(etag);
+	}
+
+	@Test
+	void matchingReconciliationKeepsCatalogVersion() {
+		when(moviesRepository.count()).thenReturn(10L);
+		counter.reconcile();
+		String etag = catalogVersion.etag();
+
+		counter.reconcile();
+
+		assertThat(counter.get()).isEqualTo(10);
+		assertThat(catalogVersion.etag()).isEqualTo(etag);
+	}
+}
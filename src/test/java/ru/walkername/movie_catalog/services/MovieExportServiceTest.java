@@ -0,0 +1,177 @@
+package ru.walkername.movie_catalog.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.transaction.annotation.Transactional;
+import ru.walkername.movie_catalog.config.SchemaUpgrade;
+import ru.walkername.movie_catalog.config.WireFormatConfig;
+import ru.walkername.movie_catalog.dto.MovieDTO;
+import ru.walkername.movie_catalog.dto.MovieImportResponse;
+import ru.walkername.movie_catalog.models.Movie;
+import ru.walkername.movie_catalog.repositories.MoviesJdbcRepository;
+import ru.walkername.movie_catalog.repositories.MoviesRepository;
+import ru.walkername.movie_catalog.util.MovieFileFormat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MovieExportServiceTest {
+
+	private final List<Movie> movies = List.of(
+			movie(1, "Crouching Tiger, Hidden Dragon", 2000, "Said \"the sword\"\nand left", 8.0, 3),
+			movie(2, "Heat", 1995, null, 0, 0),
+			movie(3, "Up", 2009, "Balloons, a house; été", 7.5, 2)
+	);
+
+	private final MoviesRepository moviesRepository = mock(MoviesRepository.class);
+
+	private final EntityManager entityManager = mock(EntityManager.class);
+
+	private final AtomicBoolean cursorClosed = new AtomicBoolean();
+
+	private final ObjectMapper objectMapper = objectMapper();
+
+	private final MovieExportService exportService = new MovieExportService(moviesRepository, entityManager, objectMapper);
+
+	MovieExportServiceTest() {
+		when(moviesRepository.streamAll()).thenAnswer(invocation -> movies.stream().onClose(() -> cursorClosed.set(true)));
+	}
+
+	@Test
+	void ndjsonExportIsImportedBack() throws IOException {
+		byte[] exported = export(MovieFileFormat.NDJSON);
+
+		List<MovieDTO> imported = importBack(exported, MovieFileFormat.NDJSON);
+
+		assertThat(imported).hasSameSizeAs(movies);
+		for (int i = 0; i < movies.size(); i++) {
+			assertThat(imported.get(i).getTitle()).isEqualTo(movies.get(i).getTitle());
+			assertThat(imported.get(i).getReleaseYear()).isEqualTo(movies.get(i).getReleaseYear());
+			assertThat(imported.get(i).getDescription()).isEqualTo(movies.get(i).getDescription());
+		}
+	}
+
+	@Test
+	void csvExportIsImportedBack() throws IOException {
+		byte[] exported = export(MovieFileFormat.CSV);
+
+		List<MovieDTO> imported = importBack(exported, MovieFileFormat.CSV);
+
+		assertThat(imported).hasSameSizeAs(movies);
+		for (int i = 0; i < movies.size(); i++) {
+			assertThat(imported.get(i).getTitle()).isEqualTo(movies.get(i).getTitle());
+			assertThat(imported.get(i).getReleaseYear()).isEqualTo(movies.get(i).getReleaseYear());
+			// CSV has no null, a missing description comes back empty
+			assertThat(imported.get(i).getDescription()).isEqualTo(Objects.toString(movies.get(i).getDescription(), ""));
+		}
+	}
+
+	@Test
+	void ndjsonExportHasNoInternalFields() throws IOException {
+		String exported = new String(export(MovieFileFormat.NDJSON), StandardCharsets.UTF_8);
+
+		assertThat(exported.split("\n")).hasSize(movies.size());
+		assertThat(exported).endsWith("\n").doesNotContain("version", "ratingSum", "ratingHistogram", "rankScore");
+	}
+
+	@Test
+	void everyMovieIsDetachedAndCursorIsClosed() throws IOException {
+		for (MovieFileFormat format : MovieFileFormat.values()) {
+			cursorClosed.set(false);
+			export(format);
+			assertThat(cursorClosed).isTrue();
+		}
+
+		for (Movie movie : movies) {
+			verify(entityManager, times(MovieFileFormat.values().length)).detach(movie);
+		}
+	}
+
+	@Test
+	void exportRunsInReadOnlyTransaction() throws NoSuchMethodException {
+		Transactional transactional = MovieExportService.class
+				.getMethod("exportMovies", OutputStream.class, MovieFileFormat.class)
+				.getAnnotation(Transactional.class);
+
+		// Postgres streams through a cursor only inside a transaction, and read-only skips dirty checks
+		assertThat(transactional).isNotNull();
+		assertThat(transactional.readOnly()).isTrue();
+	}
+
+	private byte[] export(MovieFileFormat format) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		exportService.exportMovies(out, format);
+		return out.toByteArray();
+	}
+
+	private List<MovieDTO> importBack(byte[] exported, MovieFileFormat format) throws IOException {
+		List<MovieDTO> imported = new ArrayList<>();
+		MoviesJdbcRepository moviesJdbcRepository = mock(MoviesJdbcRepository.class);
+		when(moviesJdbcRepository.insertMovies(anyList(), anyBoolean(), anyDouble())).thenAnswer(invocation -> {
+			List<MovieDTO> batch = invocation.getArgument(0);
+			imported.addAll(batch);
+			boolean[] written = new boolean[batch.size()];
+			Arrays.fill(written, true);
+			return written;
+		});
+		SchemaUpgrade schemaUpgrade = mock(SchemaUpgrade.class);
+		when(schemaUpgrade.ensureTitleReleaseYearKey()).thenReturn(true);
+		MovieImportService importService = new MovieImportService(
+				moviesJdbcRepository,
+				objectMapper,
+				Validation.buildDefaultValidatorFactory().getValidator(),
+				mock(MovieCache.class),
+				mock(MovieLeaderboard.class),
+				mock(MovieTitleIndex.class),
+				mock(MovieSearchIndex.class),
+				new CatalogVersion(),
+				mock(MovieCounter.class),
+				mock(CatalogRating.class),
+				schemaUpgrade,
+				1000,
+				100
+		);
+
+		MovieImportResponse response = importService.importMovies(
+				new ByteArrayInputStream(exported), format, MovieImportService.Mode.INSERT
+		);
+
+		assertThat(response.getRejected()).isZero();
+		assertThat(response.getImported()).isEqualTo(movies.size());
+		return imported;
+	}
+
+	// Same mapper as the application builds: with the movie fields filter, unknown properties ignored
+	private static ObjectMapper objectMapper() {
+		Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+		new WireFormatConfig().movieFieldsFilterCustomizer().customize(builder);
+		return builder.build();
+	}
+
+	private static Movie movie(int id, String title, int releaseYear, String description, double averageRating, int scores) {
+		Movie movie = new Movie(title, releaseYear, description, averageRating, scores);
+		movie.setId(id);
+		movie.setVersion(id);
+		return movie;
+	}
+}
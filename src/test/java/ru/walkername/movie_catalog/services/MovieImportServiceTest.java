@@ -0,0 +1,197 @@
+package ru.walkername.movie_catalog.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.Test;
+import ru.walkername.movie_catalog.config.SchemaUpgrade;
+import ru.walkername.movie_catalog.dto.MovieDTO;
+import ru.walkername.movie_catalog.dto.MovieImportResponse;
+import ru.walkername.movie_catalog.repositories.MoviesJdbcRepository;
+import ru.walkername.movie_catalog.util.MovieFileFormat;
+import ru.walkername.movie_catalog.util.MovieImportUnavailableException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MovieImportServiceTest {
+
+	private final MoviesJdbcRepository moviesJdbcRepository = mock(MoviesJdbcRepository.class);
+
+	private final SchemaUpgrade schemaUpgrade = mock(SchemaUpgrade.class);
+
+	private final MovieCounter movieCounter = mock(MovieCounter.class);
+
+	private final CatalogVersion catalogVersion = new CatalogVersion();
+
+	// Movie table by title and release year, the value is the description
+	private final Map<String, String> table = new HashMap<>();
+
+	private final List<Integer> batchSizes = new ArrayList<>();
+
+	private final MovieImportService importService = new MovieImportService(
+			moviesJdbcRepository,
+			new ObjectMapper(),
+			Validation.buildDefaultValidatorFactory().getValidator(),
+			mock(MovieCache.class),
+			mock(MovieLeaderboard.class),
+			mock(MovieTitleIndex.class),
+			mock(MovieSearchIndex.class),
+			catalogVersion,
+			movieCounter,
+			mock(CatalogRating.class),
+			schemaUpgrade,
+			2,
+			100
+	);
+
+	MovieImportServiceTest() {
+		when(schemaUpgrade.ensureTitleReleaseYearKey()).thenReturn(true);
+		when(moviesJdbcRepository.insertMovies(anyList(), anyBoolean(), anyDouble())).thenAnswer(invocation -> {
+			List<MovieDTO> movies = invocation.getArgument(0);
+			boolean upsert = invocation.getArgument(1);
+			batchSizes.add(movies.size());
+			boolean[] written = new boolean[movies.size()];
+			for (int i = 0; i < movies.size(); i++) {
+				MovieDTO movie = movies.get(i);
+				String key = key(movie.getTitle(), movie.getReleaseYear());
+				written[i] = upsert || !table.containsKey(key);
+				if (written[i]) {
+					table.put(key, movie.getDescription());
+				}
+			}
+			return written;
+		});
+	}
+
+	@Test
+	void ndjsonRowsAreImportedAndInvalidOnesRejected() throws IOException {
+		String etag = catalogVersion.etag();
+
+		MovieImportResponse response = importMovies(MovieFileFormat.NDJSON, MovieImportService.Mode.INSERT, """
+				{"title": "Alien", "releaseYear": 1979, "description": "In space"}
+				{"title": "Heat", "releaseYear": 1995}
+
+				{"title": "Heat",
+				null
+				42
+				{"releaseYear": 2000}
+				{"title": "Up", "releaseYear": 2009}
+				""");
+
+		assertThat(response.getImported()).isEqualTo(3);
+		assertThat(response.getRejected()).isEqualTo(4);
+		assertThat(response.getErrors()).containsExactly(
+				"row 4: invalid JSON",
+				"row 5: should be a JSON object",
+				"row 6: invalid JSON",
+				"row 7: title - Movie title should not be empty;"
+		);
+		assertThat(table).containsEntry(key("Alien", 1979), "In space").containsKeys(key("Heat", 1995), key("Up", 2009));
+		assertThat(catalogVersion.etag()).isNotEqualTo(etag);
+		verify(movieCounter).reconcile();
+	}
+
+	@Test
+	void csvQuotedFieldsAreImported() throws IOException {
+		MovieImportResponse response = importMovies(MovieFileFormat.CSV, MovieImportService.Mode.INSERT, """
+				title,releaseYear,description
+				"Crouching Tiger, Hidden Dragon",2000,"Said ""the sword""
+				and left"
+				Heat,1995
+				Up,year,Balloons
+				Alien,1979,
+				""");
+
+		assertThat(response.getImported()).isEqualTo(2);
+		assertThat(response.getErrors()).containsExactly(
+				"row 2: expected 3 fields, got 2",
+				"row 3: releaseYear - should be a number"
+		);
+		assertThat(table).containsEntry(key("Crouching Tiger, Hidden Dragon", 2000), "Said \"the sword\"\nand left");
+		assertThat(table).containsEntry(key("Alien", 1979), "");
+	}
+
+	@Test
+	void rowsAreWrittenInBatches() throws IOException {
+		MovieImportResponse response = importMovies(MovieFileFormat.NDJSON, MovieImportService.Mode.INSERT, """
+				{"title": "A", "releaseYear": 2001}
+				{"title": "B", "releaseYear": 2002}
+				{"title": "C", "releaseYear": 2003}
+				{"title": "D", "releaseYear": 2004}
+				{"title": "E", "releaseYear": 2005}
+				""");
+
+		assertThat(response.getImported()).isEqualTo(5);
+		assertThat(batchSizes).containsExactly(2, 2, 1);
+	}
+
+	@Test
+	void insertRejectsExistingMoviesAndUpsertReplacesThem() throws IOException {
+		table.put(key("Heat", 1995), "Old");
+		String body = """
+				{"title": "Heat", "releaseYear": 1995, "description": "New"}
+				{"title": "Up", "releaseYear": 2009}
+				""";
+
+		MovieImportResponse inserted = importMovies(MovieFileFormat.NDJSON, MovieImportService.Mode.INSERT, body);
+
+		assertThat(inserted.getImported()).isEqualTo(1);
+		assertThat(inserted.getRejected()).isEqualTo(1);
+		assertThat(inserted.getErrors()).containsExactly("row 1: movie with the same title and release year already exists");
+		assertThat(table).containsEntry(key("Heat", 1995), "Old");
+
+		MovieImportResponse upserted = importMovies(MovieFileFormat.NDJSON, MovieImportService.Mode.UPSERT, body);
+
+		assertThat(upserted.getImported()).isEqualTo(2);
+		assertThat(upserted.getRejected()).isZero();
+		assertThat(table).containsEntry(key("Heat", 1995), "New");
+	}
+
+	@Test
+	void repeatedMovieStartsNewUpsertBatch() throws IOException {
+		MovieImportResponse response = importMovies(MovieFileFormat.NDJSON, MovieImportService.Mode.UPSERT, """
+				{"title": "Heat", "releaseYear": 1995, "description": "First"}
+				{"title": "Heat", "releaseYear": 1995, "description": "Second"}
+				{"title": "Up", "releaseYear": 2009}
+				""");
+
+		assertThat(response.getImported()).isEqualTo(3);
+		assertThat(batchSizes).containsExactly(1, 2);
+		assertThat(table).containsEntry(key("Heat", 1995), "Second");
+	}
+
+	@Test
+	void importIsRefusedWhileDuplicatesExist() {
+		when(schemaUpgrade.ensureTitleReleaseYearKey()).thenReturn(false);
+
+		assertThatThrownBy(() -> importMovies(MovieFileFormat.NDJSON, MovieImportService.Mode.INSERT, """
+				{"title": "Up", "releaseYear": 2009}
+				"""))
+				.isInstanceOf(MovieImportUnavailableException.class);
+
+		verify(moviesJdbcRepository, never()).insertMovies(anyList(), anyBoolean(), anyDouble());
+	}
+
+	private MovieImportResponse importMovies(MovieFileFormat format, MovieImportService.Mode mode, String body) throws IOException {
+		return importService.importMovies(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), format, mode);
+	}
+
+	private static String key(String title, int releaseYear) {
+		return title + "/" + releaseYear;
+	}
+}
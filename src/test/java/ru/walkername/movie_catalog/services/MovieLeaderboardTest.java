@@ -0,0 +1,57 @@
+package ru.walkername.movie_catalog.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import ru.walkername.movie_catalog.models.Movie;
+import ru.walkername.movie_catalog.repositories.MoviesRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MovieLeaderboardTest {
+
+	private final MoviesRepository moviesRepository = mock(MoviesRepository.class);
+
+	private final MovieLeaderboard leaderboard = new MovieLeaderboard(moviesRepository, 10);
+
+	@BeforeEach
+	void loadBoard() {
+		when(moviesRepository.findAllByOrderByAverageRatingDescIdDesc(any(Limit.class), eq(Movie.class))).thenReturn(List.of(
+				movie(1, 9.0, 1),
+				movie(2, 8.0, 1),
+				movie(3, 7.0, 1)
+		));
+		leaderboard.rebuild();
+	}
+
+	@Test
+	void newerSnapshotMovesMovie() {
+		leaderboard.movieChanged(movie(3, 9.5, 2));
+
+		assertThat(leaderboard.getPage(0, 3)).extracting(Movie::getId).containsExactly(3, 1, 2);
+	}
+
+	@Test
+	void olderSnapshotDoesNotReplaceNewerOne() {
+		// After-commit callbacks of two rating transactions ran in reverse order
+		leaderboard.movieChanged(movie(3, 9.5, 3));
+		leaderboard.movieChanged(movie(3, 6.0, 2));
+		leaderboard.movieChanged(movie(1, 5.0, 1));
+
+		assertThat(leaderboard.getPage(0, 3)).extracting(Movie::getId).containsExactly(3, 1, 2);
+		assertThat(leaderboard.getPage(0, 1).get(0).getAverageRating()).isEqualTo(9.5);
+	}
+
+	private static Movie movie(int id, double averageRating, long version) {
+		Movie movie = new Movie("Movie " + id, 2000, null, averageRating, 1);
+		movie.setId(id);
+		movie.setVersion(version);
+		return movie;
+	}
+}
@@ -0,0 +1,93 @@
+package ru.walkername.movie_catalog.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import ru.walkername.movie_catalog.models.Movie;
+import ru.walkername.movie_catalog.repositories.MoviesRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MovieSearchIndexTest {
+
+	private final MoviesRepository moviesRepository = mock(MoviesRepository.class);
+
+	private final MovieSearchIndex index = new MovieSearchIndex(moviesRepository);
+
+	@BeforeEach
+	void loadMovies() {
+		when(moviesRepository.findAllByIdGreaterThanOrderByIdAsc(anyInt(), any(Limit.class))).thenReturn(List.of(
+				movie(1, "The Matrix", "A hacker learns that reality is a simulation", 1),
+				movie(2, "Reality Bites", "Graduates look for work in Houston", 1),
+				movie(3, "The Godfather", "The aging patriarch of a crime dynasty transfers control", 1),
+				movie(4, "Amélie", "A shy waitress in Paris decides to change the lives of others", 1)
+		));
+		index.rebuild();
+	}
+
+	@Test
+	void titleWordsOutweighDescriptionWords() {
+		MovieSearchIndex.SearchResult result = index.search("reality", 0, 10);
+
+		assertThat(result.getIds()).containsExactly(2, 1);
+		assertThat(result.getTotal()).isEqualTo(2);
+	}
+
+	@Test
+	void matchesFoldedAndMisspelledWords() {
+		assertThat(index.search("AMELIE", 0, 10).getIds()).containsExactly(4);
+		// One edit for words of 5-8 letters, two edits for longer ones
+		assertThat(index.search("matrx", 0, 10).getIds()).containsExactly(1);
+		assertThat(index.search("godfahter", 0, 10).getIds()).containsExactly(3);
+		assertThat(index.search("mtrx", 0, 10).getIds()).isEmpty();
+	}
+
+	@Test
+	void exactMatchRanksAboveFuzzyMatch() {
+		index.movieChanged(movie(5, "Matrx", "A film about nothing", 0));
+
+		assertThat(index.search("matrix", 0, 10).getIds()).containsExactly(1, 5);
+	}
+
+	@Test
+	void pagesKeepTotalNumberOfMatches() {
+		MovieSearchIndex.SearchResult second = index.search("the", 1, 1);
+
+		assertThat(second.getIds()).hasSize(1);
+		assertThat(second.getTotal()).isEqualTo(3);
+		assertThat(index.search("the", 5, 1).getIds()).isEmpty();
+	}
+
+	@Test
+	void followsChangesAndDeletions() {
+		index.movieChanged(movie(1, "The Matrix Reloaded", "Neo fights agents", 2));
+		assertThat(index.search("simulation", 0, 10).getIds()).isEmpty();
+		assertThat(index.search("reloaded", 0, 10).getIds()).containsExactly(1);
+
+		index.movieDeleted(3);
+		assertThat(index.search("godfather", 0, 10).getIds()).isEmpty();
+		assertThat(index.search("godfahter", 0, 10).getIds()).isEmpty();
+	}
+
+	@Test
+	void olderSnapshotDoesNotReplaceNewerOne() {
+		index.movieChanged(movie(1, "The Matrix Reloaded", "Neo fights agents", 3));
+		index.movieChanged(movie(1, "The Matrix", "A hacker learns that reality is a simulation", 2));
+
+		assertThat(index.search("reloaded", 0, 10).getIds()).containsExactly(1);
+		assertThat(index.search("simulation", 0, 10).getIds()).isEmpty();
+	}
+
+	private static Movie movie(int id, String title, String description, long version) {
+		Movie movie = new Movie(title, 2000, description, 0, 0);
+		movie.setId(id);
+		movie.setVersion(version);
+		return movie;
+	}
+}
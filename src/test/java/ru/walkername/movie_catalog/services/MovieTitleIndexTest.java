@@ -0,0 +1,113 @@
+package ru.walkername.movie_catalog.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.walkername.movie_catalog.models.Movie;
+import ru.walkername.movie_catalog.repositories.MoviesRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MovieTitleIndexTest {
+
+	private final MoviesRepository moviesRepository = mock(MoviesRepository.class);
+
+	private final MovieTitleIndex index = new MovieTitleIndex(moviesRepository);
+
+	@BeforeEach
+	void loadTitles() {
+		when(moviesRepository.findAllTitlesAndRatings()).thenReturn(List.of(
+				new Object[]{1, "Amélie", 8.3, 1L},
+				new Object[]{2, "Amadeus", 8.4, 1L},
+				new Object[]{3, "Alien", 8.5, 1L},
+				new Object[]{4, "American Beauty", 8.3, 1L},
+				new Object[]{5, "Avatar", 7.9, 1L}
+		));
+		index.rebuild();
+	}
+
+	@Test
+	void findsPrefixIgnoringCaseAndDiacriticsBestRatedFirst() {
+		assertThat(index.search("AM", 10)).containsExactly(2, 4, 1);
+		assertThat(index.search("ame", 10)).containsExactly(4, 1);
+		assertThat(index.search("amelie", 10)).containsExactly(1);
+	}
+
+	@Test
+	void limitKeepsOnlyTheBestMatches() {
+		assertThat(index.search("a", 2)).containsExactly(3, 2);
+		assertThat(index.search("a", 0)).isEmpty();
+		assertThat(index.search("", 10)).isEmpty();
+		assertThat(index.search("z", 10)).isEmpty();
+	}
+
+	@Test
+	void followsRatingsTitlesAndDeletions() {
+		index.movieChanged(movie(5, "Avatar", 9.0, 2));
+		assertThat(index.search("a", 1)).containsExactly(5);
+
+		index.movieChanged(movie(3, "Blade Runner", 8.5, 2));
+		assertThat(index.search("al", 10)).isEmpty();
+		assertThat(index.search("blade", 10)).containsExactly(3);
+
+		index.movieChanged(movie(6, "Alien", 8.4, 0));
+		assertThat(index.search("alien", 10)).containsExactly(6);
+
+		index.movieDeleted(2);
+		assertThat(index.search("am", 10)).containsExactly(4, 1);
+		assertThat(index.size()).isEqualTo(5);
+	}
+
+	@Test
+	void olderSnapshotDoesNotReplaceNewerOne() {
+		// After-commit callbacks of two rating transactions ran in reverse order
+		index.movieChanged(movie(5, "Avatar", 9.0, 3));
+		index.movieChanged(movie(5, "Avatar", 2.0, 2));
+		assertThat(index.search("a", 1)).containsExactly(5);
+
+		index.movieChanged(movie(3, "Blade Runner", 8.5, 3));
+		index.movieChanged(movie(3, "Alien", 8.5, 2));
+		assertThat(index.search("alien", 10)).isEmpty();
+		assertThat(index.search("blade", 10)).containsExactly(3);
+	}
+
+	@Test
+	void shortPrefixesFollowChangesBeyondTheirRankedLists() {
+		// 60 titles starting with "a", movie i is rated i / 10, so more than a ranked list holds
+		List<Object[]> rows = new ArrayList<>();
+		for (int id = 1; id <= 60; id++) {
+			rows.add(new Object[]{id, "A movie " + id, id / 10.0, 1L});
+		}
+		MovieTitleIndex large = new MovieTitleIndex(moviesRepository);
+		when(moviesRepository.findAllTitlesAndRatings()).thenReturn(rows);
+		large.rebuild();
+
+		assertThat(large.search("a", 3)).containsExactly(60, 59, 58);
+
+		// The best movie drops below the tail of the list, the next one outside of it must take its place
+		large.movieChanged(movie(60, "A movie 60", 0.0, 2));
+		assertThat(large.search("a", 3)).containsExactly(59, 58, 57);
+		assertThat(large.search("a ", 50)).hasSize(50).startsWith(59, 58).endsWith(10);
+		assertThat(large.search("a", 50)).hasSize(50).startsWith(59, 58).endsWith(10);
+
+		// A new movie ranks first, a renamed one leaves the prefix
+		large.movieChanged(movie(61, "Avatar", 9.9, 0));
+		large.movieChanged(movie(59, "Blade Runner", 5.9, 2));
+		assertThat(large.search("a", 3)).containsExactly(61, 58, 57);
+		assertThat(large.search("av", 3)).containsExactly(61);
+
+		large.movieDeleted(61);
+		assertThat(large.search("a", 2)).containsExactly(58, 57);
+	}
+
+	private static Movie movie(int id, String title, double averageRating, long version) {
+		Movie movie = new Movie(title, 2000, null, averageRating, 1);
+		movie.setId(id);
+		movie.setVersion(version);
+		return movie;
+	}
+}
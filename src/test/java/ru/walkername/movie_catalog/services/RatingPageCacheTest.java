@@ -0,0 +1,143 @@
+package ru.walkername.movie_catalog.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.walkername.movie_catalog.dto.NewRatingDTO;
+import ru.walkername.movie_catalog.dto.RatingsResponse;
+import ru.walkername.movie_catalog.models.Movie;
+import ru.walkername.movie_catalog.repositories.MoviesJdbcRepository;
+import ru.walkername.movie_catalog.repositories.MoviesRepository;
+import ru.walkername.movie_catalog.util.RatingServiceUnavailableException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RatingPageCacheTest {
+
+	private final RatingServiceClient ratingServiceClient = mock(RatingServiceClient.class);
+
+	private RatingPageCache cache = cache(100);
+
+	@AfterEach
+	void shutdown() {
+		cache.shutdown();
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	@Test
+	void invalidationDropsAllPagesOfUserAndOnlyThem() {
+		when(ratingServiceClient.getRatingsByUser(anyInt(), anyInt(), anyInt(), anyBoolean())).thenReturn(new RatingsResponse());
+		cache.getRatingsByUser(1, 0, 10, true);
+		cache.getRatingsByUser(1, 1, 10, true);
+		cache.getRatingsByUser(1, 0, 20, false);
+		cache.getRatingsByUser(2, 0, 10, true);
+
+		cache.invalidateUsers(List.of(1));
+
+		assertThat(cache.indexedKeys()).isEqualTo(1);
+		cache.getRatingsByUser(1, 0, 10, true);
+		cache.getRatingsByUser(1, 1, 10, true);
+		cache.getRatingsByUser(1, 0, 20, false);
+		cache.getRatingsByUser(2, 0, 10, true);
+		verify(ratingServiceClient, times(2)).getRatingsByUser(1, 0, 10, true);
+		verify(ratingServiceClient, times(2)).getRatingsByUser(1, 1, 10, true);
+		verify(ratingServiceClient, times(2)).getRatingsByUser(1, 0, 20, false);
+		verify(ratingServiceClient, times(1)).getRatingsByUser(2, 0, 10, true);
+	}
+
+	@Test
+	void ratingOfUserDropsTheirPagesAfterCommit() {
+		when(ratingServiceClient.getRatingsByUser(anyInt(), anyInt(), anyInt(), anyBoolean())).thenReturn(new RatingsResponse());
+		cache.getRatingsByUser(1, 0, 10, true);
+		cache.getRatingsByUser(1, 1, 10, true);
+		cache.getRatingsByUser(2, 0, 10, true);
+		MoviesService moviesService = moviesService();
+		NewRatingDTO rating = new NewRatingDTO();
+		rating.setRating(8);
+		rating.setUserId(1);
+
+		TransactionSynchronizationManager.initSynchronization();
+		moviesService.updateAverageRating(7, rating);
+
+		// Not committed yet: a reader may still see the old rating in DB, so the pages stay
+		assertThat(cache.indexedKeys()).isEqualTo(3);
+		cache.getRatingsByUser(1, 0, 10, true);
+		verify(ratingServiceClient, times(1)).getRatingsByUser(1, 0, 10, true);
+
+		for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+			synchronization.afterCommit();
+		}
+
+		assertThat(cache.indexedKeys()).isEqualTo(1);
+		cache.getRatingsByUser(1, 0, 10, true);
+		cache.getRatingsByUser(1, 1, 10, true);
+		cache.getRatingsByUser(2, 0, 10, true);
+		verify(ratingServiceClient, times(2)).getRatingsByUser(1, 0, 10, true);
+		verify(ratingServiceClient, times(2)).getRatingsByUser(1, 1, 10, true);
+		verify(ratingServiceClient, times(1)).getRatingsByUser(2, 0, 10, true);
+	}
+
+	@Test
+	void evictedPagesLeaveIndex() {
+		cache = cache(3);
+		when(ratingServiceClient.getRatingsByUser(anyInt(), anyInt(), anyInt(), anyBoolean())).thenReturn(new RatingsResponse());
+
+		for (int userId = 1; userId <= 50; userId++) {
+			cache.getRatingsByUser(userId, 0, 10, true);
+			cache.getRatingsByUser(userId, 1, 10, true);
+		}
+
+		assertThat(cache.indexedKeys()).isLessThanOrEqualTo(3).isEqualTo((int) cache.size());
+	}
+
+	@Test
+	void failedLoadLeavesIndex() {
+		when(ratingServiceClient.getRatingsByUser(anyInt(), anyInt(), anyInt(), anyBoolean()))
+				.thenThrow(new RatingServiceUnavailableException("Rating service is unavailable"));
+
+		assertThatThrownBy(() -> cache.getRatingsByUser(1, 0, 10, true))
+				.isInstanceOf(RatingServiceUnavailableException.class);
+
+		assertThat(cache.indexedKeys()).isZero();
+	}
+
+	private RatingPageCache cache(long maxSize) {
+		return new RatingPageCache(ratingServiceClient, maxSize, Duration.ofSeconds(30), Duration.ofMinutes(10));
+	}
+
+	private MoviesService moviesService() {
+		MoviesRepository moviesRepository = mock(MoviesRepository.class);
+		MoviesJdbcRepository moviesJdbcRepository = mock(MoviesJdbcRepository.class);
+		when(moviesJdbcRepository.addRatings(anyList(), anyDouble(), anyDouble())).thenReturn(new int[]{1});
+		when(moviesRepository.findById(eq(7))).thenReturn(Optional.of(new Movie("Movie 7", 2000, null, 8.0, 1)));
+		return new MoviesService(
+				moviesRepository,
+				cache,
+				mock(MovieCache.class),
+				moviesJdbcRepository,
+				mock(MovieLeaderboard.class),
+				mock(MovieTitleIndex.class),
+				mock(MovieSearchIndex.class),
+				mock(MovieCounter.class),
+				mock(CatalogRating.class),
+				List.of()
+		);
+	}
+}
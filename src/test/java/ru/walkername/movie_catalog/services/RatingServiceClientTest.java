@@ -0,0 +1,185 @@
+package ru.walkername.movie_catalog.services;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.web.client.RestTemplate;
+import ru.walkername.movie_catalog.config.RatingServiceClientConfig;
+import ru.walkername.movie_catalog.dto.RatingsResponse;
+import ru.walkername.movie_catalog.util.CircuitBreaker;
+import ru.walkername.movie_catalog.util.RatingServiceUnavailableException;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RatingServiceClientTest {
+
+	private static final Duration READ_TIMEOUT = Duration.ofMillis(200);
+
+	private HttpServer server;
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private final AtomicInteger hits = new AtomicInteger();
+
+	private volatile boolean hung;
+
+	private volatile boolean unavailable;
+
+	@BeforeEach
+	void startStub() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/ratings/user/", exchange -> {
+			hits.incrementAndGet();
+			if (unavailable) {
+				exchange.getResponseHeaders().add("Retry-After", "30");
+				exchange.sendResponseHeaders(503, -1);
+				exchange.close();
+				return;
+			}
+			if (hung) {
+				try {
+					release.await(30, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			byte[] body = "{\"ratings\":[{\"userId\":1,\"movieId\":2,\"rating\":7.0}]}".getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			exchange.getResponseBody().write(body);
+			exchange.close();
+		});
+		server.start();
+	}
+
+	@AfterEach
+	void stopStub() {
+		release.countDown();
+		server.stop(0);
+	}
+
+	private RatingServiceClient client(int failureThreshold) {
+		RestTemplate restTemplate = new RatingServiceClientConfig().ratingServiceRestTemplate(
+				new RestTemplateBuilder(), 10, Duration.ofMillis(200), READ_TIMEOUT, Duration.ofMillis(200)
+		);
+		String url = "http://localhost:" + server.getAddress().getPort();
+		return new RatingServiceClient(restTemplate, url, failureThreshold, Duration.ofSeconds(30));
+	}
+
+	@Test
+	void returnsRatingsOfHealthyUpstream() {
+		RatingsResponse response = client(5).getRatingsByUser(1, 0, 10, true);
+
+		assertThat(response.getRatings()).hasSize(1);
+		assertThat(response.getRatings().get(0).getMovieId()).isEqualTo(2);
+	}
+
+	@Test
+	void hungUpstreamDoesNotExhaustRequestThreads() throws Exception {
+		hung = true;
+		RatingServiceClient client = client(3);
+		int requestThreads = 4;
+		int requests = 40;
+		ExecutorService tomcatLikePool = Executors.newFixedThreadPool(requestThreads);
+
+		long start = System.nanoTime();
+		List<Future<?>> results = new ArrayList<>();
+		for (int i = 0; i < requests; i++) {
+			results.add(tomcatLikePool.submit(() -> client.getRatingsByUser(1, 0, 10, true)));
+		}
+		int failedFast = 0;
+		for (Future<?> result : results) {
+			try {
+				result.get(10, TimeUnit.SECONDS);
+			} catch (java.util.concurrent.ExecutionException e) {
+				assertThat(e.getCause()).isInstanceOf(RatingServiceUnavailableException.class);
+				failedFast++;
+			}
+		}
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		tomcatLikePool.shutdownNow();
+
+		// Without deadlines 40 requests on 4 threads would wait for the upstream forever
+		assertThat(failedFast).isEqualTo(requests);
+		assertThat(elapsedMillis).isLessThan(5_000);
+		// After the breaker opened, the remaining requests did not reach the upstream
+		assertThat(hits.get()).isLessThan(requests);
+		assertThat(client.getCircuitBreakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+		assertThat(client.getCallStats().getRejected()).isPositive();
+	}
+
+	@Test
+	void unexpectedExceptionOfProbeStillReopensBreaker() throws Exception {
+		AtomicBoolean broken = new AtomicBoolean(true);
+		RestTemplate restTemplate = new RatingServiceClientConfig().ratingServiceRestTemplate(
+				new RestTemplateBuilder(), 10, Duration.ofMillis(200), READ_TIMEOUT, Duration.ofMillis(200)
+		);
+		restTemplate.setInterceptors(List.of((request, body, execution) -> {
+			if (broken.get()) {
+				throw new IllegalStateException("Broken interceptor");
+			}
+			return execution.execute(request, body);
+		}));
+		RatingServiceClient client = new RatingServiceClient(
+				restTemplate, "http://localhost:" + server.getAddress().getPort(), 1, Duration.ofMillis(50)
+		);
+
+		assertThatThrownBy(() -> client.getRatingsByUser(1, 0, 10, true)).isInstanceOf(IllegalStateException.class);
+		assertThat(client.getCircuitBreakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+		// The half-open probe fails the same way and must not leave the breaker waiting for it
+		Thread.sleep(100);
+		assertThatThrownBy(() -> client.getRatingsByUser(1, 0, 10, true)).isInstanceOf(IllegalStateException.class);
+		assertThat(client.getCircuitBreakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+		Thread.sleep(100);
+		broken.set(false);
+		assertThat(client.getRatingsByUser(1, 0, 10, true).getRatings()).hasSize(1);
+		assertThat(client.getCircuitBreakerState()).isEqualTo(CircuitBreaker.State.CLOSED);
+	}
+
+	@Test
+	void unavailableResponseIsNotRetriedAfterRetryAfter() {
+		unavailable = true;
+		RatingServiceClient client = client(5);
+
+		long start = System.nanoTime();
+		assertThatThrownBy(() -> client.getRatingsByUser(1, 0, 10, true))
+				.isInstanceOf(RatingServiceUnavailableException.class);
+
+		// Retrying would sleep for the 30 seconds of Retry-After
+		assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1_000);
+		assertThat(hits.get()).isEqualTo(1);
+	}
+
+	@Test
+	void openBreakerFailsFast() {
+		hung = true;
+		RatingServiceClient client = client(1);
+		assertThatThrownBy(() -> client.getRatingsByUser(1, 0, 10, true))
+				.isInstanceOf(RatingServiceUnavailableException.class);
+
+		long start = System.nanoTime();
+		assertThatThrownBy(() -> client.getRatingsByUser(1, 0, 10, true))
+				.isInstanceOf(RatingServiceUnavailableException.class);
+
+		assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(READ_TIMEOUT.toMillis());
+	}
+}
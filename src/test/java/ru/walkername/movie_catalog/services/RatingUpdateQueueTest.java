@@ -0,0 +1,108 @@
+package ru.walkername.movie_catalog.services;
+
+import org.junit.jupiter.api.Test;
+import ru.walkername.movie_catalog.dto.RatingDelta;
+import ru.walkername.movie_catalog.dto.RatingEventDTO;
+import ru.walkername.movie_catalog.util.RatingQueueFullException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+class RatingUpdateQueueTest {
+
+	private final MoviesService moviesService = mock(MoviesService.class);
+
+	private final List<List<RatingDelta>> applied = new ArrayList<>();
+
+	private final RatingUpdateQueue queue = new RatingUpdateQueue(
+			moviesService, mock(RatingPageCache.class), 100, Duration.ofMillis(10), 1000, Duration.ofMillis(300)
+	);
+
+	@Test
+	void eventsOfTheSameMovieAreMergedIntoOneChange() {
+		recordAppliedDeltas();
+
+		queue.enqueue(List.of(event(2, 8, null), event(1, 5, null), event(2, 6, 4)));
+		queue.enqueue(List.of(event(2, 10, null)));
+
+		assertThat(queue.flush()).isEqualTo(4);
+		assertThat(applied).hasSize(1);
+		List<RatingDelta> deltas = applied.get(0);
+		assertThat(deltas).extracting(RatingDelta::getMovieId).containsExactly(1, 2);
+
+		RatingDelta movie2 = deltas.get(1);
+		assertThat(movie2.getDelta()).isEqualTo(8 + (6 - 4) + 10);
+		assertThat(movie2.getAdded()).isEqualTo(2);
+		assertThat(movie2.getBuckets()[8]).isEqualTo(1);
+		assertThat(movie2.getBuckets()[6]).isEqualTo(1);
+		assertThat(movie2.getBuckets()[4]).isEqualTo(-1);
+		assertThat(movie2.getBuckets()[10]).isEqualTo(1);
+		assertThat(queue.getAppliedEvents()).isEqualTo(4);
+	}
+
+	@Test
+	void failedChangesAreKeptForTheNextFlush() {
+		doThrow(new IllegalStateException("DB is down")).when(moviesService).applyRatingDeltas(anyList());
+		queue.enqueue(List.of(event(1, 7, null)));
+		assertThatThrownBy(queue::flush).isInstanceOf(IllegalStateException.class);
+
+		recordAppliedDeltas();
+		queue.enqueue(List.of(event(1, 3, null)));
+		queue.flush();
+
+		assertThat(applied).hasSize(1);
+		assertThat(applied.get(0)).singleElement().satisfies(delta -> {
+			assertThat(delta.getDelta()).isEqualTo(10);
+			assertThat(delta.getAdded()).isEqualTo(2);
+		});
+	}
+
+	@Test
+	void drainGivesUpWhenDbIsDown() {
+		doThrow(new IllegalStateException("DB is down")).when(moviesService).applyRatingDeltas(anyList());
+		queue.enqueue(List.of(event(1, 7, null)));
+
+		long start = System.nanoTime();
+		queue.drain();
+
+		assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+	}
+
+	@Test
+	void eventsAreRejectedAfterDrain() {
+		recordAppliedDeltas();
+		queue.drain();
+
+		assertThatThrownBy(() -> queue.enqueue(List.of(event(1, 7, null))))
+				.isInstanceOf(RatingQueueFullException.class);
+		assertThat(queue.size()).isZero();
+	}
+
+	private void recordAppliedDeltas() {
+		// The queue reuses its list after a flush, so it is copied
+		doAnswer(invocation -> {
+			List<RatingDelta> deltas = invocation.getArgument(0);
+			applied.add(new ArrayList<>(deltas));
+			return null;
+		}).when(moviesService).applyRatingDeltas(anyList());
+	}
+
+	private static RatingEventDTO event(int movieId, int rating, Integer oldRating) {
+		RatingEventDTO event = new RatingEventDTO();
+		event.setMovieId(movieId);
+		event.setRating(rating);
+		if (oldRating != null) {
+			event.setUpdate(true);
+			event.setOldRating(oldRating);
+		}
+		return event;
+	}
+}
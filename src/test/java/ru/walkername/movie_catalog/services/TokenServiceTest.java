@@ -0,0 +1,135 @@
+package ru.walkername.movie_catalog.services;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.SignatureVerificationException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.junit.jupiter.api.Test;
+import ru.walkername.movie_catalog.models.VerifiedToken;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TokenServiceTest {
+
+	private static final String SECRET = "test-secret";
+
+	private static final Duration MAX_TTL = Duration.ofMinutes(5);
+
+	private final FakeTime time = new FakeTime(Instant.parse("2026-01-01T00:00:00Z"));
+
+	private final TokenService tokenService = new TokenService(SECRET, 3, MAX_TTL, time, time, Runnable::run);
+
+	@Test
+	void cachedTokenIsRejectedOnceExpired() {
+		String token = token("user", SECRET, Duration.ofMinutes(2));
+		tokenService.authenticate(token);
+
+		time.advance(Duration.ofMinutes(1));
+		assertThat(tokenService.authenticate(token).getUsername()).isEqualTo("user");
+		assertThat(tokenService.getCacheStats().hitCount()).isEqualTo(1);
+
+		time.advance(Duration.ofMinutes(1).plusSeconds(1));
+		assertThatThrownBy(() -> tokenService.authenticate(token)).isInstanceOf(TokenExpiredException.class);
+		assertThat(tokenService.getCacheStats().hitCount()).isEqualTo(1);
+	}
+
+	@Test
+	void cacheHitsDoNotProlongMaxTtl() {
+		String token = token("user", SECRET, Duration.ofHours(1));
+		tokenService.authenticate(token);
+
+		// Reads every minute must not push the entry past maxTtl from the first verification
+		for (int i = 0; i < 4; i++) {
+			time.advance(Duration.ofMinutes(1));
+			tokenService.authenticate(token);
+		}
+		assertThat(tokenService.getCacheStats().hitCount()).isEqualTo(4);
+
+		time.advance(Duration.ofMinutes(1).plusSeconds(1));
+		tokenService.authenticate(token);
+		assertThat(tokenService.getCacheStats().hitCount()).isEqualTo(4);
+		assertThat(tokenService.getCacheStats().missCount()).isEqualTo(2);
+	}
+
+	@Test
+	void tamperedTokenIsNeverServedFromCache() {
+		String token = token("user", SECRET, Duration.ofHours(1));
+		tokenService.authenticate(token);
+
+		String[] parts = token.split("\\.");
+		String forged = token("admin", "other-secret", Duration.ofHours(1)).split("\\.")[1];
+		String tampered = parts[0] + "." + forged + "." + parts[2];
+
+		assertThatThrownBy(() -> tokenService.authenticate(tampered))
+				.isInstanceOf(SignatureVerificationException.class);
+		assertThat(tokenService.getCacheStats().hitCount()).isZero();
+		assertThat(tokenService.getCacheSize()).isEqualTo(1);
+	}
+
+	@Test
+	void cacheSizeIsCapped() {
+		for (int i = 0; i < 10; i++) {
+			VerifiedToken verified = tokenService.authenticate(token("user" + i, SECRET, Duration.ofHours(1)));
+			assertThat(verified.getUsername()).isEqualTo("user" + i);
+		}
+
+		assertThat(tokenService.getCacheSize()).isLessThanOrEqualTo(3);
+		assertThat(tokenService.getCacheStats().evictionCount()).isGreaterThanOrEqualTo(7);
+	}
+
+	private String token(String username, String secret, Duration lifetime) {
+		return JWT.create()
+				.withSubject("User details")
+				.withIssuer("auth-service")
+				.withClaim("username", username)
+				.withClaim("role", "USER")
+				.withExpiresAt(time.instant().plus(lifetime))
+				.sign(Algorithm.HMAC256(secret));
+	}
+
+	/**
+	 * Clock for token claims and ticker for the cache, moved together by the test
+	 */
+	private static class FakeTime extends Clock implements Ticker {
+
+		private final Instant start;
+
+		private volatile long nanos;
+
+		private FakeTime(Instant start) {
+			this.start = start;
+		}
+
+		void advance(Duration duration) {
+			nanos += duration.toNanos();
+		}
+
+		@Override
+		public long read() {
+			return nanos;
+		}
+
+		@Override
+		public Instant instant() {
+			return start.plusNanos(nanos);
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+	}
+}
@@ -0,0 +1,199 @@
+package ru.walkername.movie_catalog.services;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.client.RestTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import ru.walkername.movie_catalog.config.RatingServiceClientConfig;
+import ru.walkername.movie_catalog.dto.RatingsResponse;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the service with spring.threads.virtual.enabled=false (Tomcat pool of 200 platform threads)
+ * and =true when every request blocks on a slow rating service call.
+ * Each mode starts its own embedded Tomcat with the real RatingServiceClient, load comes over HTTP.
+ * Run with: mvn test -Dtest=VirtualThreadsLoadTest -Dloadtest=true
+ */
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class VirtualThreadsLoadTest {
+
+	private static final Logger log = LoggerFactory.getLogger(VirtualThreadsLoadTest.class);
+
+	private static final int CONCURRENT_REQUESTS = 1000;
+
+	// More than Tomcat's 200 threads, so in platform mode the thread pool is the bottleneck, not the connection pool
+	private static final int MAX_CONNECTIONS = 400;
+
+	private static final Duration UPSTREAM_LATENCY = Duration.ofMillis(100);
+
+	private HttpServer upstream;
+
+	private final HttpClient httpClient = HttpClient.newBuilder()
+			.version(HttpClient.Version.HTTP_1_1)
+			.executor(Executors.newVirtualThreadPerTaskExecutor())
+			.build();
+
+	@BeforeEach
+	void startSlowUpstream() throws Exception {
+		upstream = HttpServer.create(new InetSocketAddress("localhost", 0), CONCURRENT_REQUESTS);
+		upstream.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+		upstream.createContext("/ratings/user/", exchange -> {
+			try {
+				Thread.sleep(UPSTREAM_LATENCY);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			byte[] body = "{\"ratings\":[]}".getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			exchange.getResponseBody().write(body);
+			exchange.close();
+		});
+		upstream.start();
+	}
+
+	@AfterEach
+	void stopUpstream() {
+		upstream.stop(0);
+	}
+
+	@Test
+	void virtualThreadsServeSlowUpstreamCallsWithLowerTailLatency() throws Exception {
+		Result platform = measure(false);
+		Result virtual = measure(true);
+
+		log.info("platform threads: {}", platform);
+		log.info("virtual threads:  {}", virtual);
+
+		assertThat(platform.failed).isZero();
+		assertThat(virtual.failed).isZero();
+		assertThat(virtual.p99Millis).isLessThan(platform.p99Millis);
+	}
+
+	private Result measure(boolean virtualThreads) throws Exception {
+		try (ServletWebServerApplicationContext context = (ServletWebServerApplicationContext) new SpringApplicationBuilder(LoadTestApplication.class)
+				.properties(
+						"server.port=0",
+						"spring.main.banner-mode=off",
+						"spring.threads.virtual.enabled=" + virtualThreads,
+						"rating.service.url=http://localhost:" + upstream.getAddress().getPort(),
+						"rating.service.max-connections=" + MAX_CONNECTIONS,
+						"rating.service.pool-timeout=PT30S",
+						"rating.service.read-timeout=PT30S",
+						"rating.service.circuit-breaker.failure-threshold=" + Integer.MAX_VALUE
+				)
+				.run()) {
+			URI uri = URI.create("http://localhost:" + context.getWebServer().getPort() + "/load-test/ratings/");
+			// Warm up connections and JIT
+			run(uri);
+			return run(uri);
+		}
+	}
+
+	private Result run(URI base) throws Exception {
+		long[] latencies = new long[CONCURRENT_REQUESTS];
+		AtomicInteger failed = new AtomicInteger();
+		List<Future<?>> futures = new ArrayList<>(CONCURRENT_REQUESTS);
+		long start = System.nanoTime();
+		try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+				int request = i;
+				futures.add(clients.submit(() -> {
+					long sent = System.nanoTime();
+					HttpResponse<Void> response = httpClient.send(
+							HttpRequest.newBuilder(base.resolve(String.valueOf(request))).build(),
+							HttpResponse.BodyHandlers.discarding()
+					);
+					latencies[request] = System.nanoTime() - sent;
+					if (response.statusCode() != 200) {
+						failed.incrementAndGet();
+					}
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get(2, TimeUnit.MINUTES);
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+
+		Arrays.sort(latencies);
+		return new Result(
+				CONCURRENT_REQUESTS / (elapsed / 1e9),
+				latencies[CONCURRENT_REQUESTS / 2] / 1e6,
+				latencies[CONCURRENT_REQUESTS * 99 / 100] / 1e6,
+				failed.get()
+		);
+	}
+
+	private record Result(double throughput, double p50Millis, double p99Millis, int failed) {
+
+		@Override
+		public String toString() {
+			return String.format("%.0f req/s, p50 %.1f ms, p99 %.1f ms, %d failed", throughput, p50Millis, p99Millis, failed);
+		}
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	@ImportAutoConfiguration({
+			ServletWebServerFactoryAutoConfiguration.class,
+			DispatcherServletAutoConfiguration.class,
+			WebMvcAutoConfiguration.class,
+			HttpMessageConvertersAutoConfiguration.class,
+			JacksonAutoConfiguration.class,
+			RestTemplateAutoConfiguration.class
+	})
+	@Import({RatingServiceClientConfig.class, RatingServiceClient.class, RatingsController.class})
+	static class LoadTestApplication {
+
+	}
+
+	@RestController
+	static class RatingsController {
+
+		private final RatingServiceClient ratingServiceClient;
+
+		RatingsController(RatingServiceClient ratingServiceClient) {
+			this.ratingServiceClient = ratingServiceClient;
+		}
+
+		@GetMapping("/load-test/ratings/{userId}")
+		RatingsResponse ratings(@PathVariable("userId") int userId) {
+			return ratingServiceClient.getRatingsByUser(userId, 0, 10, true);
+		}
+	}
+}
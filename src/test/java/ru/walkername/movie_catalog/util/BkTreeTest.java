@@ -0,0 +1,63 @@
+package ru.walkername.movie_catalog.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BkTreeTest {
+
+	@Test
+	void distanceCountsInsertionsDeletionsAndReplacements() {
+		assertThat(BkTree.distance("kitten", "sitting")).isEqualTo(3);
+		assertThat(BkTree.distance("matrix", "matrix")).isZero();
+		assertThat(BkTree.distance("", "alien")).isEqualTo(5);
+		assertThat(BkTree.distance("godfather", "godfahter")).isEqualTo(2);
+	}
+
+	@Test
+	void findsTheSameWordsAsFullScan() {
+		Random random = new Random(7);
+		Set<String> words = new HashSet<>();
+		while (words.size() < 3000) {
+			words.add(randomWord(random));
+		}
+		BkTree tree = new BkTree();
+		for (String word : words) {
+			tree.add(word);
+			tree.add(word);
+		}
+		assertThat(tree.size()).isEqualTo(words.size());
+
+		for (int i = 0; i < 200; i++) {
+			String query = randomWord(random);
+			for (int maxEdits = 1; maxEdits <= 2; maxEdits++) {
+				Map<String, Integer> expected = new HashMap<>();
+				for (String word : words) {
+					int distance = BkTree.distance(query, word);
+					if (distance <= maxEdits) {
+						expected.put(word, distance);
+					}
+				}
+				Map<String, Integer> found = new HashMap<>();
+				tree.search(query, maxEdits, found::put);
+
+				assertThat(found).isEqualTo(expected);
+			}
+		}
+	}
+
+	private static String randomWord(Random random) {
+		// Small alphabet, so many words are close to each other
+		char[] word = new char[4 + random.nextInt(6)];
+		for (int i = 0; i < word.length; i++) {
+			word[i] = (char) ('a' + random.nextInt(4));
+		}
+		return new String(word);
+	}
+}
@@ -0,0 +1,63 @@
+package ru.walkername.movie_catalog.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntObjectMapTest {
+
+	@Test
+	void removeKeepsFollowingEntriesOfTheProbeChainReachable() {
+		// Small table, so 24 keys make long probe chains that wrap around its end
+		IntObjectMap<String> map = new IntObjectMap<>(4);
+		for (int key = 0; key < 24; key++) {
+			map.put(key, "v" + key);
+		}
+
+		for (int key = 0; key < 24; key += 2) {
+			assertThat(map.remove(key)).isEqualTo("v" + key);
+		}
+
+		assertThat(map.size()).isEqualTo(12);
+		for (int key = 0; key < 24; key++) {
+			assertThat(map.get(key)).isEqualTo(key % 2 == 0 ? null : "v" + key);
+		}
+	}
+
+	@Test
+	void removeOfMissingKeyChangesNothing() {
+		IntObjectMap<String> map = new IntObjectMap<>();
+		map.put(1, "one");
+
+		assertThat(map.remove(2)).isNull();
+		assertThat(map.size()).isEqualTo(1);
+		assertThat(map.get(1)).isEqualTo("one");
+	}
+
+	@Test
+	void behavesAsHashMapUnderRandomOperations() {
+		IntObjectMap<Integer> map = new IntObjectMap<>();
+		Map<Integer, Integer> expected = new HashMap<>();
+		Random random = new Random(42);
+
+		for (int i = 0; i < 100_000; i++) {
+			// Narrow key range, so keys are removed and put again many times
+			int key = random.nextInt(2000) - 1000;
+			if (random.nextInt(3) == 0) {
+				assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+			} else {
+				assertThat(map.put(key, i)).isEqualTo(expected.put(key, i));
+			}
+		}
+
+		assertThat(map.size()).isEqualTo(expected.size());
+		for (int key = -1000; key < 1000; key++) {
+			assertThat(map.get(key)).isEqualTo(expected.get(key));
+			assertThat(map.containsKey(key)).isEqualTo(expected.containsKey(key));
+		}
+	}
+}
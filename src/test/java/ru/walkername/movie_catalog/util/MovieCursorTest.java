@@ -0,0 +1,40 @@
+package ru.walkername.movie_catalog.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MovieCursorTest {
+
+	@Test
+	void decodesWhatWasEncoded() {
+		MovieCursor cursor = MovieCursor.decode(new MovieCursor(true, 7.25, 42).encode());
+
+		assertThat(cursor.isDown()).isTrue();
+		assertThat(cursor.getAverageRating()).isEqualTo(7.25);
+		assertThat(cursor.getId()).isEqualTo(42);
+
+		assertThat(MovieCursor.decode(new MovieCursor(false, 0, 1).encode()).isDown()).isFalse();
+	}
+
+	@Test
+	void tokenIsUrlSafe() {
+		assertThat(new MovieCursor(true, 9.999999999999998, Integer.MAX_VALUE).encode()).matches("[A-Za-z0-9_-]+");
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"not base64!", "x:7.0:1", "d:7.0", "d:7.0:1:2", "d:seven:1", "d:7.0:one", "d:NaN:1", "d:Infinity:1"})
+	void rejectsMalformedTokens(String token) {
+		String encoded = token.equals("not base64!")
+				? token
+				: Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+
+		assertThatThrownBy(() -> MovieCursor.decode(encoded)).isInstanceOf(MovieWrongValidationException.class);
+	}
+}
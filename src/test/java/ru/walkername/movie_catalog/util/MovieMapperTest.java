@@ -0,0 +1,61 @@
+package ru.walkername.movie_catalog.util;
+
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import ru.walkername.movie_catalog.dto.MovieDTO;
+import ru.walkername.movie_catalog.models.Movie;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * MovieMapper must map exactly as the ModelMapper it replaced
+ */
+class MovieMapperTest {
+
+	private final ModelMapper modelMapper = new ModelMapper();
+
+	@Test
+	void newMovieMatchesModelMapper() {
+		MovieDTO movieDTO = movieDTO("Title", 2001, "Description");
+
+		assertThat(MovieMapper.toMovie(movieDTO).toString())
+				.isEqualTo(modelMapper.map(movieDTO, Movie.class).toString());
+	}
+
+	@Test
+	void editMatchesModelMapper() {
+		MovieDTO movieDTO = movieDTO("New title", 2002, null);
+		Movie expected = existingMovie();
+		Movie actual = existingMovie();
+
+		modelMapper.map(movieDTO, expected);
+		MovieMapper.copyInto(movieDTO, actual);
+
+		assertThat(actual.toString()).isEqualTo(expected.toString());
+	}
+
+	@Test
+	void movieDtoMatchesModelMapper() {
+		Movie movie = existingMovie();
+
+		MovieDTO expected = modelMapper.map(movie, MovieDTO.class);
+		MovieDTO actual = MovieMapper.toMovieDTO(movie);
+
+		assertThat(actual).usingRecursiveComparison().isEqualTo(expected);
+	}
+
+	private static MovieDTO movieDTO(String title, int releaseYear, String description) {
+		MovieDTO movieDTO = new MovieDTO();
+		movieDTO.setTitle(title);
+		movieDTO.setReleaseYear(releaseYear);
+		movieDTO.setDescription(description);
+		return movieDTO;
+	}
+
+	private static Movie existingMovie() {
+		Movie movie = new Movie("Old title", 1999, "Old description", 7.5, 120);
+		movie.setId(42);
+		movie.setRatingSum(900);
+		return movie;
+	}
+}
@@ -0,0 +1,32 @@
+package ru.walkername.movie_catalog.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MovieSortTest {
+
+	@Test
+	void parsesSortsIgnoringCase() {
+		assertThat(MovieSort.of("rating")).isEqualTo(MovieSort.RATING);
+		assertThat(MovieSort.of("RANK")).isEqualTo(MovieSort.RANK);
+		assertThat(MovieSort.of("Rank")).isEqualTo(MovieSort.RANK);
+	}
+
+	@Test
+	void sortsMapToPropertiesOfMovie() {
+		assertThat(MovieSort.RATING.getProperty()).isEqualTo("averageRating");
+		assertThat(MovieSort.RANK.getProperty()).isEqualTo("rankScore");
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"", "title", "rank_score", "averageRating"})
+	void rejectsUnknownSorts(String value) {
+		assertThatThrownBy(() -> MovieSort.of(value))
+				.isInstanceOf(MovieWrongValidationException.class)
+				.hasMessageContaining("sort");
+	}
+}
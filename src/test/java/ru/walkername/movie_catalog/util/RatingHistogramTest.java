@@ -0,0 +1,48 @@
+package ru.walkername.movie_catalog.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class RatingHistogramTest {
+
+	// Ratings 2, 8, 8, 10
+	private final int[] histogram = {0, 0, 1, 0, 0, 0, 0, 0, 2, 0, 1};
+
+	@Test
+	void derivesExactStatistics() {
+		assertThat(RatingHistogram.count(histogram)).isEqualTo(4);
+		assertThat(RatingHistogram.mean(histogram)).isEqualTo(7.0);
+		assertThat(RatingHistogram.median(histogram)).isEqualTo(8.0);
+		assertThat(RatingHistogram.standardDeviation(histogram)).isCloseTo(3.0, within(1e-9));
+	}
+
+	@Test
+	void medianOfEvenCountIsMeanOfMiddleRatings() {
+		int[] twoRatings = new int[RatingHistogram.BUCKETS];
+		twoRatings[3] = 1;
+		twoRatings[6] = 1;
+
+		assertThat(RatingHistogram.median(twoRatings)).isEqualTo(4.5);
+	}
+
+	@Test
+	void bayesianScorePullsFewRatingsTowardsGlobalMean() {
+		int[] oneRating = new int[RatingHistogram.BUCKETS];
+		oneRating[10] = 1;
+
+		assertThat(RatingHistogram.bayesianScore(oneRating, 6.0, 4)).isEqualTo(6.8);
+		assertThat(RatingHistogram.bayesianScore(oneRating, 6.0, 0)).isEqualTo(10.0);
+		assertThat(RatingHistogram.bayesianScore(new int[RatingHistogram.BUCKETS], 6.0, 4)).isEqualTo(6.0);
+	}
+
+	@Test
+	void emptyHistogramHasZeroStatistics() {
+		int[] empty = new int[RatingHistogram.BUCKETS];
+
+		assertThat(RatingHistogram.mean(empty)).isZero();
+		assertThat(RatingHistogram.median(empty)).isZero();
+		assertThat(RatingHistogram.standardDeviation(empty)).isZero();
+	}
+}
@@ -0,0 +1,72 @@
+package ru.walkername.movie_catalog.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+	private final SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+
+	@Test
+	void concurrentCallersShareOneComputation() throws Exception {
+		AtomicInteger computations = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			Future<Integer> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+				computations.incrementAndGet();
+				started.countDown();
+				await(release);
+				return 1;
+			}));
+			assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+			Future<Integer> follower = executor.submit(() -> singleFlight.execute("key", () -> {
+				computations.incrementAndGet();
+				return 2;
+			}));
+			Thread.sleep(100);
+			release.countDown();
+
+			assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+			assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+			assertThat(computations).hasValue(1);
+			assertThat(singleFlight.inFlight()).isZero();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void completedFlightIsNotReused() {
+		assertThat(singleFlight.execute("key", () -> 1)).isEqualTo(1);
+		assertThat(singleFlight.execute("key", () -> 2)).isEqualTo(2);
+	}
+
+	@Test
+	void failureIsNotCached() {
+		assertThatThrownBy(() -> singleFlight.execute("key", () -> {
+			throw new IllegalStateException("upstream failed");
+		})).isInstanceOf(IllegalStateException.class);
+
+		assertThat(singleFlight.execute("key", () -> 3)).isEqualTo(3);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}